@@ -0,0 +1,73 @@
+package org.moon.figura.lua;
+
+import org.luaj.vm2.*;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares calling a whitelisted method through its wrapper against the old per call path,
+ * which switched on the parameter type names and went through Method.invoke.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LuaWrapperBenchmark {
+
+    @LuaWhitelist
+    public static class Target {
+        public double x;
+
+        public Target add(Double a, Double b, Boolean round) {
+            x += round ? Math.round(a + b) : a + b;
+            return this;
+        }
+    }
+
+    private Method method;
+    private Class<?>[] argumentTypes;
+    private VarArgFunction wrapper;
+    private Varargs args;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        method = Target.class.getMethod("add", Double.class, Double.class, Boolean.class);
+        argumentTypes = method.getParameterTypes();
+
+        LuaTypeManager typeManager = new LuaTypeManager();
+        typeManager.generateMetatableFor(Target.class);
+        wrapper = typeManager.getWrapper(method);
+
+        Target target = new Target();
+        args = LuaValue.varargsOf(new LuaValue[]{(LuaValue) typeManager.javaToLua(target), LuaValue.valueOf(1.5), LuaValue.valueOf(2), LuaValue.FALSE});
+    }
+
+    @Benchmark
+    public Varargs wrapper() {
+        return wrapper.invoke(args);
+    }
+
+    @Benchmark
+    public Object reflection() throws Exception {
+        Object caller = args.checkuserdata(1, Target.class);
+        Object[] actualArgs = new Object[argumentTypes.length];
+        for (int i = 0; i < argumentTypes.length; i++) {
+            int argIndex = i + 2;
+            actualArgs[i] = switch (argumentTypes[i].getName()) {
+                case "java.lang.Number", "java.lang.Double", "double" -> args.checkdouble(argIndex);
+                case "java.lang.String" -> args.checkjstring(argIndex);
+                case "java.lang.Boolean", "boolean" -> args.toboolean(argIndex);
+                case "java.lang.Float", "float" -> (float) args.checkdouble(argIndex);
+                case "java.lang.Integer", "int" -> args.checkint(argIndex);
+                case "java.lang.Long", "long" -> args.checklong(argIndex);
+                case "org.luaj.vm2.LuaTable" -> args.checktable(argIndex);
+                case "org.luaj.vm2.LuaFunction" -> args.checkfunction(argIndex);
+                case "org.luaj.vm2.LuaValue" -> args.arg(argIndex);
+                default -> args.checkuserdata(argIndex, argumentTypes[i]);
+            };
+        }
+        return method.invoke(caller, actualArgs);
+    }
+}
@@ -0,0 +1,100 @@
+package org.moon.figura.lua.api.world;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaUserdata;
+import org.luaj.vm2.LuaValue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two shapes scripts get blocks in: one BlockState per block, as getBlocks builds them,
+ * against the palette and index table of getBlockRegion.
+ * No world can be built outside the game, so the blocks come from an array instead of chunk sections.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlockRegionBenchmark {
+
+    @Param({"8", "16", "32"})
+    public int size;
+
+    private BlockState[] states;
+
+    @Setup
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        //layers of terrain, with the odd different block in between
+        BlockState[] layers = {Blocks.STONE.defaultBlockState(), Blocks.DIRT.defaultBlockState(), Blocks.GRASS_BLOCK.defaultBlockState(), Blocks.AIR.defaultBlockState()};
+        states = new BlockState[size * size * size];
+        for (int y = 0; y < size; y++) {
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    BlockState state = layers[Math.min(y * layers.length / size, layers.length - 1)];
+                    if ((x * 31 + z * 17 + y * 7) % 53 == 0)
+                        state = Blocks.OAK_LOG.defaultBlockState();
+                    states[WorldAPI.getRegionIndex(x, y, z, size, size) - 1] = state;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public LuaTable blockList() {
+        List<BlockStateAPI> list = new ArrayList<>(states.length);
+        for (int y = 0; y < size; y++) {
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++)
+                    list.add(new BlockStateAPI(states[WorldAPI.getRegionIndex(x, y, z, size, size) - 1], new BlockPos(x, y, z)));
+            }
+        }
+
+        //what the type manager turns the list into
+        LuaTable table = new LuaTable(list.size(), 0);
+        for (int i = 0; i < list.size(); i++)
+            table.rawset(i + 1, new LuaUserdata(list.get(i)));
+        return table;
+    }
+
+    @Benchmark
+    public LuaTable blockRegion() {
+        Map<BlockState, Integer> ids = new IdentityHashMap<>();
+        List<BlockStateAPI> palette = new ArrayList<>();
+        LuaTable blocks = new LuaTable(states.length, 0);
+
+        BlockState lastState = null;
+        LuaValue lastId = null;
+        for (int y = 0; y < size; y++) {
+            for (int z = 0; z < size; z++) {
+                int row = WorldAPI.getRegionIndex(0, y, z, size, size);
+                for (int x = 0; x < size; x++) {
+                    BlockState state = states[row + x - 1];
+                    if (state != lastState) {
+                        Integer id = ids.get(state);
+                        if (id == null) {
+                            palette.add(new BlockStateAPI(state, new BlockPos(x, y, z)));
+                            id = palette.size();
+                            ids.put(state, id);
+                        }
+                        lastState = state;
+                        lastId = LuaValue.valueOf(id);
+                    }
+                    blocks.rawset(row + x, lastId);
+                }
+            }
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,96 @@
+package org.moon.figura.model;
+
+import org.moon.figura.math.vector.FiguraVec3;
+import org.moon.figura.model.rendering.Vertex;
+import org.moon.figura.model.rendering.VertexArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares smoothfy against the old grouping, which keyed every vertex by its printed position.
+ * The key is built with the same format the printer uses by default, as the config can't be read outside the game.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SmoothNormalsBenchmark {
+
+    //cubes in a row, each corner shared by three faces
+    @Param({"16", "256", "4096"})
+    public int cubes;
+
+    private final DecimalFormat df = new DecimalFormat("0.#####");
+    private Map<Integer, VertexArray> source;
+    private Map<Integer, VertexArray> vertices;
+
+    @Setup
+    public void setup() {
+        df.setRoundingMode(RoundingMode.DOWN);
+
+        VertexArray array = new VertexArray(cubes * 24);
+        for (int c = 0; c < cubes; c++) {
+            for (int face = 0; face < 6; face++) {
+                int axis = face / 2;
+                float side = face % 2 == 0 ? 0f : 1f;
+                for (int corner = 0; corner < 4; corner++) {
+                    float[] pos = new float[3];
+                    pos[axis] = side;
+                    pos[(axis + 1) % 3] = corner & 1;
+                    pos[(axis + 2) % 3] = corner >> 1;
+                    float[] normal = new float[3];
+                    normal[axis] = side == 0f ? -1f : 1f;
+                    array.add(pos[0] + c * 2, pos[1], pos[2], 0f, 0f, normal[0], normal[1], normal[2]);
+                }
+            }
+        }
+
+        source = new HashMap<>();
+        source.put(0, array);
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        vertices = new HashMap<>();
+        for (Map.Entry<Integer, VertexArray> entry : source.entrySet())
+            vertices.put(entry.getKey(), entry.getValue().copy());
+    }
+
+    @Benchmark
+    public Map<Integer, VertexArray> positionHash() {
+        FiguraModelPartReader.smoothfy(vertices, FiguraModelPartReader.WELD_EPSILON);
+        return vertices;
+    }
+
+    @Benchmark
+    public Map<Integer, VertexArray> stringKeys() {
+        //separate vertices
+        Map<String, List<Vertex>> verticesByPos = new HashMap<>();
+        for (VertexArray array : vertices.values()) {
+            for (int i = 0; i < array.size(); i++) {
+                Vertex vertex = new Vertex(array, i);
+                FiguraVec3 pos = vertex.getPos();
+                String id = "{" + df.format(pos.x) + ", " + df.format(pos.y) + ", " + df.format(pos.z) + "}";
+                List<Vertex> list = verticesByPos.computeIfAbsent(id, str -> new ArrayList<>(4));
+                list.add(vertex);
+            }
+        }
+
+        //for all separated vertices
+        for (List<Vertex> list : verticesByPos.values()) {
+            //sum their normals
+            FiguraVec3 result = FiguraVec3.of();
+            for (Vertex vertex : list)
+                result.add(vertex.getNormal());
+            //normalize the normal
+            result.normalize();
+            //apply new normal
+            for (Vertex vertex : list)
+                vertex.setNormal(result);
+        }
+        return vertices;
+    }
+}
@@ -81,6 +81,7 @@ public class FiguraMod implements ClientModInitializer {
         NetworkStuff.tick();
         popPushProfiler("files");
         LocalAvatarLoader.tick();
+        CacheAvatarLoader.tick();
         LocalAvatarFetcher.tick();
         popPushProfiler("avatars");
         AvatarManager.tickLoadedAvatars();
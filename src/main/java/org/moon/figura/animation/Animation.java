@@ -1,5 +1,6 @@
 package org.moon.figura.animation;
 
+import net.minecraft.util.Mth;
 import org.luaj.vm2.LuaError;
 import org.luaj.vm2.LuaValue;
 import org.moon.figura.avatar.Avatar;
@@ -9,6 +10,7 @@ import org.moon.figura.lua.docs.LuaFieldDoc;
 import org.moon.figura.lua.docs.LuaMethodDoc;
 import org.moon.figura.lua.docs.LuaMethodOverload;
 import org.moon.figura.lua.docs.LuaTypeDoc;
+import org.moon.figura.math.vector.FiguraVec3;
 import org.moon.figura.model.FiguraModelPart;
 
 import java.util.*;
@@ -127,7 +129,7 @@ public class Animation {
         for (Float codeTime : codeFrames.keySet()) {
             if (codeTime >= minTime && codeTime < maxTime) {
                 try {
-                    LuaValue value = owner.loadScript("animations." + modelName + "." + name, codeFrames.get(codeTime));
+                    LuaValue value = owner.loadCachedScript("animations." + modelName + "." + name, codeFrames.get(codeTime));
                     owner.run(value, owner.animation, this);
                 } catch (Exception e) {
                     owner.luaRuntime.error(e);
@@ -607,5 +609,65 @@ public class Animation {
         HOLD
     }
 
-    public record AnimationChannel(TransformType type, Keyframe... keyframes) {}
+    public static class AnimationChannel {
+        private final TransformType type;
+        private final Keyframe[] keyframes;
+
+        //last keyframe index, animations usually move forward so the next lookup is often the same or the next segment
+        private int cursor;
+        private BakedChannel baked;
+        private boolean bakeFailed;
+
+        public AnimationChannel(TransformType type, Keyframe... keyframes) {
+            this.type = type;
+            this.keyframes = keyframes;
+        }
+
+        public TransformType type() {
+            return type;
+        }
+
+        public Keyframe[] keyframes() {
+            return keyframes;
+        }
+
+        //index of the keyframe the time is currently after, same as a binary search over the keyframe times
+        public int findIndex(float time) {
+            int length = keyframes.length;
+            int c = cursor;
+            if (c < length && (c == 0 || time > keyframes[c].getTime()) && (c + 1 >= length || time <= keyframes[c + 1].getTime()))
+                return c;
+
+            return cursor = Math.max(0, Mth.binarySearch(0, length, index -> time <= keyframes[index].getTime()) - 1);
+        }
+
+        public float getDelta(int currentIndex, float time) {
+            int nextIndex = Math.min(keyframes.length - 1, currentIndex + 1);
+            if (currentIndex == nextIndex)
+                return 0;
+
+            Keyframe current = keyframes[currentIndex];
+            float timeDiff = time - current.getTime();
+            return Math.min(Math.max(timeDiff / (keyframes[nextIndex].getTime() - current.getTime()), 0), 1);
+        }
+
+        public FiguraVec3 evaluate(float time, float strength) {
+            int currentIndex = findIndex(time);
+            int nextIndex = Math.min(keyframes.length - 1, currentIndex + 1);
+            return getInterpolation(currentIndex, nextIndex).generate(keyframes, currentIndex, nextIndex, strength, getDelta(currentIndex, time), type);
+        }
+
+        public Interpolation getInterpolation(int currentIndex, int nextIndex) {
+            return keyframes[nextIndex].getInterpolation() == Interpolation.BEZIER ? Interpolation.BEZIER : keyframes[currentIndex].getInterpolation();
+        }
+
+        //baked lazily, null when the channel has lua keyframes
+        public BakedChannel getBaked() {
+            if (baked == null && !bakeFailed) {
+                baked = BakedChannel.bake(this);
+                bakeFailed = baked == null;
+            }
+            return baked;
+        }
+    }
 }
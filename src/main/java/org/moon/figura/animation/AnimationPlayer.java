@@ -1,7 +1,7 @@
 package org.moon.figura.animation;
 
-import net.minecraft.util.Mth;
 import org.moon.figura.FiguraMod;
+import org.moon.figura.config.Configs;
 import org.moon.figura.math.vector.FiguraVec3;
 import org.moon.figura.model.FiguraModelPart;
 
@@ -10,6 +10,9 @@ import java.util.Map;
 
 public class AnimationPlayer {
 
+    //reused by baked channels, their values are only read while being applied
+    private static final FiguraVec3 SAMPLE = FiguraVec3.of();
+
     public static int tick(Animation anim, int limit) {
         if (anim.playState == Animation.PlayState.STOPPED)
             return limit;
@@ -40,24 +43,15 @@ public class AnimationPlayer {
                 TransformType type = channel.type();
                 FiguraMod.pushProfiler(type.name());
 
-                Keyframe[] keyframes = channel.keyframes();
-
-                int currentIndex = Math.max(0, Mth.binarySearch(0, keyframes.length, index -> anim.frameTime <= keyframes[index].getTime()) - 1);
-                int nextIndex = Math.min(keyframes.length - 1, currentIndex + 1);
-
-                Keyframe current = keyframes[currentIndex];
-                Keyframe next = keyframes[nextIndex];
-
-                float delta;
-                if (current == next) {
-                    delta = 0;
+                FiguraVec3 transform;
+                BakedChannel baked = Configs.BAKE_ANIMATIONS.value ? channel.getBaked() : null;
+                if (baked != null) {
+                    int index = channel.findIndex(anim.frameTime);
+                    transform = baked.sample(index, channel.getDelta(index, anim.frameTime), anim.blend, SAMPLE);
                 } else {
-                    float timeDiff = anim.frameTime - current.getTime();
-                    delta = Math.min(Math.max(timeDiff / (next.getTime() - current.getTime()), 0), 1);
+                    transform = channel.evaluate(anim.frameTime, anim.blend);
                 }
 
-                Interpolation interpolation = next.getInterpolation() == Interpolation.BEZIER ? Interpolation.BEZIER : current.getInterpolation();
-                FiguraVec3 transform = interpolation.generate(keyframes, currentIndex, nextIndex, anim.blend, delta, type);
                 type.apply(part, transform, merge);
 
                 switch (type) {
@@ -0,0 +1,93 @@
+package org.moon.figura.animation;
+
+import org.moon.figura.math.vector.FiguraVec3;
+
+/**
+ * Pre-sampled values of an animation channel that has no lua keyframes.
+ * Every segment between two keyframes is sampled at full strength when baked, linear and step segments are exact
+ * with one or two samples, while curves are sampled at {@link #SAMPLE_RATE} and linearly interpolated when played.
+ */
+public class BakedChannel {
+
+    public static final float SAMPLE_RATE = 60f; //samples per second
+    private static final int MAX_SAMPLES = 256; //per segment
+
+    private final TransformType type;
+    private final int[] offsets; //first sample of each segment
+    private final int[] steps; //samples after the first one, per segment
+    private final float[] samples; //xyz packed
+
+    private BakedChannel(TransformType type, int[] offsets, int[] steps, float[] samples) {
+        this.type = type;
+        this.offsets = offsets;
+        this.steps = steps;
+        this.samples = samples;
+    }
+
+    public static BakedChannel bake(Animation.AnimationChannel channel) {
+        Keyframe[] keyframes = channel.keyframes();
+        if (keyframes.length == 0)
+            return null;
+        for (Keyframe keyframe : keyframes) {
+            if (!keyframe.isConstant())
+                return null;
+        }
+
+        int length = keyframes.length;
+        int[] offsets = new int[length];
+        int[] steps = new int[length];
+
+        int total = 0;
+        for (int i = 0; i < length; i++) {
+            int next = Math.min(length - 1, i + 1);
+            offsets[i] = total;
+            steps[i] = i == next ? 0 : switch (channel.getInterpolation(i, next)) {
+                case STEP -> 0;
+                case LINEAR -> 1;
+                default -> Math.min(Math.max((int) Math.ceil((keyframes[next].getTime() - keyframes[i].getTime()) * SAMPLE_RATE), 1), MAX_SAMPLES);
+            };
+            total += steps[i] + 1;
+        }
+
+        TransformType type = channel.type();
+        float[] samples = new float[total * 3];
+        for (int i = 0; i < length; i++) {
+            int next = Math.min(length - 1, i + 1);
+            Interpolation interpolation = channel.getInterpolation(i, next);
+            int count = steps[i];
+            for (int j = 0; j <= count; j++) {
+                FiguraVec3 vec = interpolation.generate(keyframes, i, next, 1f, count == 0 ? 0f : (float) j / count, type);
+                int k = (offsets[i] + j) * 3;
+                samples[k] = (float) vec.x;
+                samples[k + 1] = (float) vec.y;
+                samples[k + 2] = (float) vec.z;
+            }
+        }
+
+        return new BakedChannel(type, offsets, steps, samples);
+    }
+
+    //writes the sample into the given vector, without allocating anything
+    public FiguraVec3 sample(int index, float delta, float strength, FiguraVec3 out) {
+        int count = steps[index];
+        int k = offsets[index] * 3;
+
+        float x, y, z;
+        if (count == 0) {
+            x = samples[k]; y = samples[k + 1]; z = samples[k + 2];
+        } else {
+            float pos = delta * count;
+            int i = Math.min((int) pos, count - 1);
+            float t = pos - i;
+            k += i * 3;
+            x = samples[k] + (samples[k + 3] - samples[k]) * t;
+            y = samples[k + 1] + (samples[k + 4] - samples[k + 1]) * t;
+            z = samples[k + 2] + (samples[k + 5] - samples[k + 2]) * t;
+        }
+
+        //same as the interpolation results, scale blends around 1
+        if (type == TransformType.SCALE)
+            return out.set((x - 1) * strength + 1, (y - 1) * strength + 1, (z - 1) * strength + 1);
+        return out.set(x * strength, y * strength, z * strength);
+    }
+}
@@ -16,6 +16,7 @@ public class Keyframe implements Comparable<Keyframe> {
     private final Interpolation interpolation;
     private final FiguraVec3 targetA, targetB;
     private final String[] aCode, bCode;
+    private final Float[] aNumbers, bNumbers; //parsed once, null for entries that are lua code
     private final String chunkName;
     private final FiguraVec3 bezierLeft, bezierRight;
     private final FiguraVec3 bezierLeftTime, bezierRightTime;
@@ -29,6 +30,8 @@ public class Keyframe implements Comparable<Keyframe> {
         this.targetB = b.getFirst();
         this.aCode = a.getSecond();
         this.bCode = b.getSecond();
+        this.aNumbers = parseNumbers(aCode);
+        this.bNumbers = parseNumbers(bCode);
         this.chunkName = animation.getName() + " keyframe (" + time + "s)";
         this.bezierLeft = bezierLeft;
         this.bezierRight = bezierRight;
@@ -36,24 +39,48 @@ public class Keyframe implements Comparable<Keyframe> {
         this.bezierRightTime = bezierRightTime;
     }
 
+    private static Float[] parseNumbers(String[] code) {
+        if (code == null)
+            return null;
+
+        Float[] numbers = new Float[code.length];
+        for (int i = 0; i < code.length; i++) {
+            try {
+                numbers[i] = Float.parseFloat(code[i]);
+            } catch (Exception ignored) {}
+        }
+        return numbers;
+    }
+
     public FiguraVec3 getTargetA(float delta) {
-        return targetA != null ? targetA.copy() : FiguraVec3.of(parseStringData(aCode[0], delta), parseStringData(aCode[1], delta), parseStringData(aCode[2], delta));
+        return targetA != null ? targetA.copy() : FiguraVec3.of(parseStringData(aCode[0], aNumbers[0], delta), parseStringData(aCode[1], aNumbers[1], delta), parseStringData(aCode[2], aNumbers[2], delta));
     }
 
     public FiguraVec3 getTargetB(float delta) {
-        return targetB != null ? targetB.copy() : FiguraVec3.of(parseStringData(bCode[0], delta), parseStringData(bCode[1], delta), parseStringData(bCode[2], delta));
+        return targetB != null ? targetB.copy() : FiguraVec3.of(parseStringData(bCode[0], bNumbers[0], delta), parseStringData(bCode[1], bNumbers[1], delta), parseStringData(bCode[2], bNumbers[2], delta));
     }
 
-    private float parseStringData(String data, float delta) {
+    private float parseStringData(String data, Float number, float delta) {
+        if (number != null)
+            return number;
+
         FiguraMod.pushProfiler(data);
+        if (data == null)
+            return FiguraMod.popReturnProfiler(0f);
+
         try {
-            return FiguraMod.popReturnProfiler(Float.parseFloat(data));
-        } catch (Exception ignored) {
-            if (data == null)
+            LuaValue val = owner.loadCachedScript(chunkName, "return " + data);
+            if (val == null)
                 return FiguraMod.popReturnProfiler(0f);
 
+            Varargs args = owner.run(val, owner.animation, delta, animation);
+            if (args.isnumber(1))
+                return FiguraMod.popReturnProfiler(args.tofloat(1));
+            else
+                throw new Exception(); //dummy exception
+        } catch (Exception ignored) {
             try {
-                LuaValue val = owner.loadScript(chunkName, "return " + data);
+                LuaValue val = owner.loadCachedScript(chunkName, data);
                 if (val == null)
                     return FiguraMod.popReturnProfiler(0f);
 
@@ -61,28 +88,31 @@ public class Keyframe implements Comparable<Keyframe> {
                 if (args.isnumber(1))
                     return FiguraMod.popReturnProfiler(args.tofloat(1));
                 else
-                    throw new Exception(); //dummy exception
-            } catch (Exception ignored2) {
-                try {
-                    LuaValue val = owner.loadScript(chunkName, data);
-                    if (val == null)
-                        return FiguraMod.popReturnProfiler(0f);
-
-                    Varargs args = owner.run(val, owner.animation, delta, animation);
-                    if (args.isnumber(1))
-                        return FiguraMod.popReturnProfiler(args.tofloat(1));
-                    else
-                        throw new LuaError("Failed to parse data from [" + this.chunkName + "], expected number, but got " + args.arg(1).typename());
-                } catch (Exception e) {
-                    if (owner.luaRuntime != null)
-                        owner.luaRuntime.error(e);
-                }
+                    throw new LuaError("Failed to parse data from [" + this.chunkName + "], expected number, but got " + args.arg(1).typename());
+            } catch (Exception e) {
+                if (owner.luaRuntime != null)
+                    owner.luaRuntime.error(e);
             }
         }
 
         return FiguraMod.popReturnProfiler(0f);
     }
 
+    //true when none of the targets are lua code, so the keyframe always evaluates to the same values
+    public boolean isConstant() {
+        return (targetA != null || isNumbers(aNumbers)) && (targetB != null || isNumbers(bNumbers));
+    }
+
+    private static boolean isNumbers(Float[] numbers) {
+        if (numbers == null)
+            return false;
+        for (Float number : numbers) {
+            if (number == null)
+                return false;
+        }
+        return true;
+    }
+
     public float getTime() {
         return time;
     }
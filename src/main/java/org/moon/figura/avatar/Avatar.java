@@ -1,5 +1,6 @@
 package org.moon.figura.avatar;
 
+import com.google.common.io.CountingOutputStream;
 import com.mojang.blaze3d.audio.OggAudioStream;
 import com.mojang.blaze3d.audio.SoundBuffer;
 import com.mojang.blaze3d.platform.Lighting;
@@ -38,7 +39,6 @@ import org.moon.figura.backend2.NetworkStuff;
 import org.moon.figura.config.Configs;
 import org.moon.figura.lua.FiguraLuaPrinter;
 import org.moon.figura.lua.FiguraLuaRuntime;
-import org.moon.figura.lua.api.entity.EntityAPI;
 import org.moon.figura.lua.api.particle.ParticleAPI;
 import org.moon.figura.lua.api.ping.PingArg;
 import org.moon.figura.lua.api.ping.PingFunction;
@@ -66,10 +66,15 @@ import org.moon.figura.utils.ui.UIHelper;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 //the avatar class
@@ -77,14 +82,26 @@ import java.util.function.Consumer;
 //and also related to the owner, like its permissions
 public class Avatar {
 
-    private static CompletableFuture<Void> tasks;
+    //avatars are loaded in the background, a few at a time
+    private static final int MAX_CONCURRENT_LOADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final ExecutorService LOADING_EXECUTOR = Executors.newFixedThreadPool(MAX_CONCURRENT_LOADS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Figura Avatar Loader #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
     public static boolean firstPerson;
 
     //properties
     public final UUID owner;
     public final EntityType<?> entityType;
     public CompoundTag nbt;
-    public boolean loaded = true;
+    public volatile boolean loaded = true; //written last, so everything loaded before it is visible once it is true
+    private CompletableFuture<Void> loadingTask = CompletableFuture.completedFuture(null);
+    private int loadCount; //only the latest load is built and published
     public final boolean isHost;
 
     //metadata
@@ -93,6 +110,7 @@ public class Avatar {
     public Version version;
     public String id;
     public int fileSize;
+    public byte[] compressedNbt; //only kept for the host avatar, so uploading does not compress it again
     public String color;
     public boolean minify;
 
@@ -148,25 +166,28 @@ public class Avatar {
     }
 
     public void load(CompoundTag nbt) {
-        Runnable toRun = () -> {
-            this.nbt = nbt;
-            loaded = false;
-        };
-
-        if (tasks == null || tasks.isDone()) {
-            tasks = CompletableFuture.runAsync(toRun);
-        } else {
-            tasks.thenRun(toRun);
-        }
+        load(nbt, -1);
+    }
 
-        tasks.join();
+    //fileSize is the gzip compressed size of the nbt, when it is already known by the caller, or -1 to compute it
+    public synchronized void load(CompoundTag nbt, int fileSize) {
+        //the nbt is set right away, only the heavy loading runs in the background
+        this.nbt = nbt;
+        this.compressedNbt = null;
+        loaded = false;
+        int count = ++loadCount;
+
+        //loads of the same avatar still run in order, while different avatars load in parallel
+        loadingTask = loadingTask.exceptionally(e -> null).thenRunAsync(() -> {
+            //a newer load replaced this one, it builds and publishes the avatar instead
+            if (!isLatestLoad(count))
+                return;
 
-        if (nbt == null) {
-            loaded = true;
-            return;
-        }
+            if (nbt == null) {
+                loaded = true;
+                return;
+            }
 
-        tasks.thenRun(() -> {
             try {
                 //metadata
                 CompoundTag metadata = nbt.getCompound("metadata");
@@ -179,7 +200,7 @@ public class Avatar {
                     color = metadata.getString("color");
                 if (metadata.contains("minify"))
                     minify = metadata.getBoolean("minify");
-                fileSize = getFileSize();
+                this.fileSize = fileSize >= 0 ? fileSize : getFileSize();
                 versionStatus = getVersionStatus();
                 if (entityName.isBlank())
                     entityName = name;
@@ -194,19 +215,30 @@ public class Avatar {
             } catch (Exception e) {
                 FiguraMod.LOGGER.error("", e);
                 clean();
-                this.nbt = null;
+                synchronized (this) {
+                    if (this.nbt == nbt)
+                        this.nbt = null;
+                }
                 this.renderer = null;
                 this.luaRuntime = null;
             }
 
-            loaded = true;
-        });
+            //the single publication point, every field above is visible to whoever reads loaded as true
+            if (isLatestLoad(count))
+                loaded = true;
+        }, LOADING_EXECUTOR);
+    }
+
+    private synchronized boolean isLatestLoad(int count) {
+        return loadCount == count;
     }
 
     public void tick() {
         if (scriptError || luaRuntime == null || !loaded)
             return;
 
+        luaRuntime.typeManager.tickEntityWrappers();
+
         //fetch this avatar entity
         if (luaRuntime.getUser() == null) {
             Entity entity = EntityUtils.getEntityByUUID(owner);
@@ -284,6 +316,10 @@ public class Avatar {
         return scriptError || luaRuntime == null || !loaded ? null : luaRuntime.load(name, chunk);
     }
 
+    public LuaValue loadCachedScript(String name, String chunk) {
+        return scriptError || luaRuntime == null || !loaded ? null : luaRuntime.loadCached(name, chunk);
+    }
+
     private void flushQueuedEvents() {
         //run all queued events
         Runnable e;
@@ -315,7 +351,8 @@ public class Avatar {
     }
 
     public void punish(int amount) {
-        if (luaRuntime != null)
+        //a negative amount would give instructions back
+        if (amount > 0 && luaRuntime != null)
             luaRuntime.takeInstructions(amount);
     }
 
@@ -357,7 +394,7 @@ public class Avatar {
         run("POST_WORLD_RENDER", worldRender.post(), delta);
     }
 
-    public boolean skullRenderEvent(float delta, BlockStateAPI block, ItemStackAPI item, EntityAPI<?> entity, String mode) {
+    public boolean skullRenderEvent(float delta, BlockStateAPI block, ItemStackAPI item, Entity entity, String mode) {
         Varargs result = null;
         if (loaded && renderer != null && renderer.allowSkullRendering)
             result = run("SKULL_RENDER", render, delta, block, item, entity, mode);
@@ -369,7 +406,7 @@ public class Avatar {
         return isCancelled(result);
     }
 
-    public boolean arrowRenderEvent(float delta, EntityAPI<?> arrow) {
+    public boolean arrowRenderEvent(float delta, Entity arrow) {
         Varargs result = null;
         if (loaded) result = run("ARROW_RENDER", render, delta, arrow);
         return isCancelled(result);
@@ -894,10 +931,18 @@ public class Avatar {
 
     private int getFileSize() {
         try {
-            //get size
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            NbtIo.writeCompressed(nbt, baos);
-            return baos.size();
+            //the host avatar can be uploaded, so keep its compressed bytes around
+            if (isHost) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                NbtIo.writeCompressed(nbt, baos);
+                compressedNbt = baos.toByteArray();
+                return compressedNbt.length;
+            }
+
+            //otherwise only count them
+            CountingOutputStream out = new CountingOutputStream(OutputStream.nullOutputStream());
+            NbtIo.writeCompressed(nbt, out);
+            return (int) out.getCount();
         } catch (Exception e) {
             FiguraMod.LOGGER.warn("Failed to generate file size for model " + this.name, e);
             return 0;
@@ -247,11 +247,11 @@ public class AvatarManager {
     }
 
     //set an user's avatar
-    public static void setAvatar(UUID id, CompoundTag nbt) {
+    public static void setAvatar(UUID id, CompoundTag nbt, int fileSize) {
         try {
             UserData user = LOADED_USERS.computeIfAbsent(id, UserData::new);
             clearAvatars(id);
-            user.loadAvatar(nbt);
+            user.loadAvatar(nbt, fileSize);
         } catch (Exception e) {
             FiguraMod.LOGGER.error("Failed to set avatar for " + id, e);
         }
@@ -323,7 +323,7 @@ public class AvatarManager {
             }
 
             if (LOADED_USERS.get(targetUUID) != null) {
-                setAvatar(targetUUID, avatar.nbt);
+                setAvatar(targetUUID, avatar.nbt, avatar.fileSize);
                 if (FiguraMod.isLocal(targetUUID))
                     localUploaded = true;
                 context.getSource().sendFeedback(Component.literal("Set avatar for " + t));
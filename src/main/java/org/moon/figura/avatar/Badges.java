@@ -18,10 +18,11 @@ import org.moon.figura.utils.ui.UIHelper;
 import java.util.BitSet;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 public class Badges {
 
-    private static final String BADGES_REGEX = ".*(\\$\\{badges}|\\$\\{segdab}).*";
+    private static final Pattern BADGES_REGEX = Pattern.compile(".*(\\$\\{badges}|\\$\\{segdab}).*");
 
     public static final ResourceLocation FONT = new FiguraIdentifier("badges");
 
@@ -126,11 +127,14 @@ public class Badges {
     }
 
     public static boolean hasCustomBadges(Component text) {
-        return text.visit((style, string) -> string.matches(BADGES_REGEX) ? FormattedText.STOP_ITERATION : Optional.empty(), Style.EMPTY).isPresent();
+        return text.visit((style, string) -> BADGES_REGEX.matcher(string).matches() ? FormattedText.STOP_ITERATION : Optional.empty(), Style.EMPTY).isPresent();
     }
 
     public static Component appendBadges(Component text, UUID id, boolean allow) {
-        Component badges = allow ? fetchBadges(id) : Component.empty();
+        return appendBadges(text, allow ? fetchBadges(id) : Component.empty());
+    }
+
+    public static Component appendBadges(Component text, Component badges) {
         boolean custom = hasCustomBadges(text);
 
         //no custom badges text
@@ -0,0 +1,78 @@
+package org.moon.figura.avatar;
+
+import net.minecraft.network.chat.Component;
+import org.moon.figura.FiguraMod;
+import org.moon.figura.utils.TextUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Final entity nameplate texts, per player.
+ * Badges are fetched once per tick, and the text is only built again when the vanilla text, the name,
+ * the custom nameplate text, the badges or the nameplate config changed since the last frame
+ */
+public class NameplateCache {
+
+    private static final int MAX_ENTRIES = 512;
+    private static final Component NO_BADGES = Component.empty();
+    private static final Map<UUID, Badge> BADGES = new HashMap<>();
+    private static final Map<UUID, Entry> ENTITY = new HashMap<>();
+
+    public static Entry getEntityNameplate(UUID id, Component text, String name, Component json, int config) {
+        Component badges = getBadges(id, config > 1);
+
+        Entry entry = ENTITY.get(id);
+        if (entry != null && entry.json == json && entry.badges == badges && entry.config == config && entry.name.equals(name) && entry.text.equals(text))
+            return entry;
+
+        //text
+        Component nameText = Component.literal(name);
+        Component replacement = json != null ? json : nameText;
+
+        //name
+        replacement = TextUtils.replaceInText(replacement, "\\$\\{name\\}", nameText);
+
+        //badges
+        replacement = Badges.appendBadges(replacement, badges);
+
+        //apply name
+        Component result = TextUtils.replaceInText(text, "\\b" + Pattern.quote(name) + "\\b", replacement);
+
+        if (ENTITY.size() >= MAX_ENTRIES)
+            ENTITY.clear();
+
+        entry = new Entry(text, name, json, badges, config, TextUtils.splitText(result, "\n"), result.getString().equals("deadmau5"));
+        ENTITY.put(id, entry);
+        return entry;
+    }
+
+    //the same badges instance is returned for the whole tick, so entries can compare them by identity
+    private static Component getBadges(UUID id, boolean allow) {
+        if (!allow)
+            return NO_BADGES;
+
+        Badge badge = BADGES.get(id);
+        if (badge != null && badge.tick == FiguraMod.ticks)
+            return badge.badges;
+
+        if (BADGES.size() >= MAX_ENTRIES)
+            BADGES.clear();
+
+        Component badges = Badges.fetchBadges(id);
+
+        //keep the old instance when nothing changed, so the nameplate is not built again
+        if (badge != null && badge.badges.equals(badges))
+            badges = badge.badges;
+
+        BADGES.put(id, new Badge(FiguraMod.ticks, badges));
+        return badges;
+    }
+
+    private record Badge(int tick, Component badges) {}
+
+    public record Entry(Component text, String name, Component json, Component badges, int config, List<Component> lines, boolean deadmau) {}
+}
@@ -34,9 +34,13 @@ public class UserData {
     }
 
     public void loadAvatar(CompoundTag nbt) {
+        loadAvatar(nbt, -1);
+    }
+
+    public void loadAvatar(CompoundTag nbt, int fileSize) {
         Avatar avatar = new Avatar(id);
         this.avatars.add(avatar);
-        avatar.load(nbt);
+        avatar.load(nbt, fileSize);
         FiguraMod.debug("Loaded avatar for " + id);
     }
 
@@ -1,102 +1,144 @@
 package org.moon.figura.avatar.local;
 
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
 import net.minecraft.nbt.NbtIo;
 import org.moon.figura.FiguraMod;
 import org.moon.figura.avatar.UserData;
 import org.moon.figura.utils.IOUtils;
 
+import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.FileTime;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 
+/**
+ * Avatars downloaded from the backend, stored by their hash.
+ * Entries are kept as uncompressed nbt so cache hits are read without inflating anything,
+ * and an index file keeps their sizes and last access, so the cache is trimmed by least recently used, up to {@link #MAX_SIZE}.
+ * The index also remembers the compressed size the avatar was downloaded with, which is reported as the avatar file size
+ */
 public class CacheAvatarLoader {
 
+    private static final String INDEX_FILE = "index.dat";
+    private static final String EXTENSION = ".nbt";
+    private static final int INDEX_VERSION = 2;
+    private static final long MAX_SIZE = 512L * 1024 * 1024; //512 MB
+    private static final int INDEX_SAVE_DELAY = 100; //ticks
+
+    //access ordered, the first entry is the least recently used
+    private static final LinkedHashMap<String, Entry> INDEX = new LinkedHashMap<>(16, 0.75f, true);
+    private static long totalSize;
+    //last access changes are only saved every few seconds, instead of once per loaded avatar
+    private static boolean indexDirty;
+    private static int indexSaveTicks;
+
     public static void init() {
         LocalAvatarLoader.async(() -> {
-            Path file = getAvatarCacheDirectory();
-            if (!(Files.exists(file) && Files.isDirectory(file)))
-                return;
+            synchronized (INDEX) {
+                INDEX.clear();
+                totalSize = 0;
+
+                if (!readIndex()) {
+                    //no index yet, remove whatever was left by the old cache format
+                    clearDirectory();
+                    writeIndex();
+                }
+
+                trim();
+            }
+        });
+    }
+
+    public static void tick() {
+        if (++indexSaveTicks < INDEX_SAVE_DELAY)
+            return;
+        indexSaveTicks = 0;
 
-            List<Path> children = IOUtils.listPaths(file);
-            if (children == null)
+        synchronized (INDEX) {
+            if (!indexDirty)
                 return;
+        }
 
-            for (Path child : children) {
-                try {
-                    FileTime time = Files.getLastModifiedTime(child);
-                    long diff = System.currentTimeMillis() - time.toMillis();
-                    long elapsed = TimeUnit.MILLISECONDS.toDays(diff);
-                    if (elapsed > 7) {
-                        if (Files.deleteIfExists(child)) {
-                            FiguraMod.debug("Successfully deleted cache avatar \"{}\" with \"{}\" days old", IOUtils.getFileNameOrEmpty(child), elapsed);
-                        } else {
-                            throw new Exception();
-                        }
-                    }
-                } catch (Exception ignored) {
-                    FiguraMod.debug("Failed to delete cache avatar \"{}\"", IOUtils.getFileNameOrEmpty(child));
-                }
+        LocalAvatarLoader.async(() -> {
+            synchronized (INDEX) {
+                if (indexDirty)
+                    writeIndex();
             }
         });
     }
 
     public static boolean checkAndLoad(String hash, UserData target) {
-        Path p = getAvatarCacheDirectory();
-        p = p.resolve(hash + ".moon");
-
-        if (Files.exists(p)) {
-            load(hash, target);
-            return true;
+        int fileSize;
+        synchronized (INDEX) {
+            Entry entry = INDEX.get(hash);
+            if (entry == null)
+                return false;
+            entry.lastAccess = System.currentTimeMillis();
+            fileSize = entry.fileSize;
+            indexDirty = true;
         }
 
-        return false;
+        load(hash, target, fileSize);
+        return true;
     }
 
-    public static void load(String hash, UserData target) {
+    public static void load(String hash, UserData target, int fileSize) {
         LocalAvatarLoader.async(() -> {
-            Path path = getAvatarCacheDirectory().resolve(hash + ".moon");
+            Path path = getAvatarCacheDirectory().resolve(hash + EXTENSION);
             try {
-                target.loadAvatar(NbtIo.readCompressed(Files.newInputStream(path)));
+                //read into the heap instead of mapping it, a live mapping would keep the file from being replaced or deleted on windows
+                byte[] bytes = Files.readAllBytes(path);
+                target.loadAvatar(NbtIo.read(new DataInputStream(new ByteArrayInputStream(bytes)), NbtAccounter.UNLIMITED), fileSize);
                 FiguraMod.debug("Loaded avatar \"{}\" from cache to \"{}\"", hash, target.id);
             } catch (Exception e) {
                 FiguraMod.LOGGER.error("Failed to load cache avatar: " + hash, e);
+                remove(hash);
             }
         });
     }
 
-    public static void save(String hash, CompoundTag nbt) {
+    public static void save(String hash, CompoundTag nbt, int fileSize) {
         LocalAvatarLoader.async(() -> {
-            Path file = getAvatarCacheDirectory().resolve(hash + ".moon");
+            Path dir = getAvatarCacheDirectory();
+            Path file = dir.resolve(hash + EXTENSION);
+            Path temp = dir.resolve(hash + EXTENSION + ".tmp");
             try {
-                NbtIo.writeCompressed(nbt, Files.newOutputStream(file));
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    NbtIo.write(nbt, out);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                long size = Files.size(file);
+
+                synchronized (INDEX) {
+                    Entry old = INDEX.put(hash, new Entry(size, fileSize, System.currentTimeMillis()));
+                    if (old != null) totalSize -= old.size;
+                    totalSize += size;
+                    trim();
+                    writeIndex();
+                }
+
                 FiguraMod.debug("Saved avatar \"{}\" on cache", hash);
             } catch (Exception e) {
                 FiguraMod.LOGGER.error("Failed to save avatar on cache: " + hash, e);
+                IOUtils.deleteFile(temp);
             }
         });
     }
 
     public static void clearCache() {
         LocalAvatarLoader.async(() -> {
-            Path file = getAvatarCacheDirectory();
-
-            if (!(Files.exists(file) && Files.isDirectory(file)))
-                return;
-
-            List<Path> children = IOUtils.listPaths(file);
-            if (children == null)
-                return;
-
-            for (Path child : children) {
-                try {
-                    if (!Files.deleteIfExists(child))
-                        throw new Exception();
-                } catch (Exception ignored) {
-                    FiguraMod.debug("Failed to delete cache avatar \"{}\"", IOUtils.getFileNameOrEmpty(child));
-                }
+            synchronized (INDEX) {
+                clearDirectory();
+                INDEX.clear();
+                totalSize = 0;
+                writeIndex();
             }
 
             FiguraMod.debug("Finished clearing avatar cache");
@@ -107,4 +149,121 @@ public class CacheAvatarLoader {
     public static Path getAvatarCacheDirectory() {
         return IOUtils.getOrCreateDir(FiguraMod.getCacheDirectory(), "avatars");
     }
+
+
+    // -- index -- //
+
+
+    private static void remove(String hash) {
+        synchronized (INDEX) {
+            Entry entry = INDEX.remove(hash);
+            if (entry != null) {
+                totalSize -= entry.size;
+                indexDirty = true;
+            }
+        }
+
+        Path path = getAvatarCacheDirectory().resolve(hash + EXTENSION);
+        try {
+            Files.deleteIfExists(path);
+        } catch (Exception ignored) {
+            FiguraMod.debug("Failed to delete cache avatar \"{}\"", hash);
+        }
+    }
+
+    //evict the least recently used avatars until the cache fits its size
+    private static void trim() {
+        Iterator<Map.Entry<String, Entry>> iterator = INDEX.entrySet().iterator();
+        while (totalSize > MAX_SIZE && iterator.hasNext()) {
+            Map.Entry<String, Entry> next = iterator.next();
+            iterator.remove();
+            totalSize -= next.getValue().size;
+            indexDirty = true;
+
+            try {
+                Files.deleteIfExists(getAvatarCacheDirectory().resolve(next.getKey() + EXTENSION));
+                FiguraMod.debug("Evicted cache avatar \"{}\"", next.getKey());
+            } catch (Exception ignored) {
+                FiguraMod.debug("Failed to delete cache avatar \"{}\"", next.getKey());
+            }
+        }
+    }
+
+    private static boolean readIndex() {
+        Path path = getAvatarCacheDirectory().resolve(INDEX_FILE);
+        if (!Files.exists(path))
+            return false;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != INDEX_VERSION)
+                return false;
+
+            int count = in.readInt();
+            List<Map.Entry<String, Entry>> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                entries.add(Map.entry(in.readUTF(), new Entry(in.readLong(), in.readInt(), in.readLong())));
+
+            //rebuild the access order from the saved times
+            entries.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+            for (Map.Entry<String, Entry> entry : entries) {
+                INDEX.put(entry.getKey(), entry.getValue());
+                totalSize += entry.getValue().size;
+            }
+
+            return true;
+        } catch (Exception e) {
+            FiguraMod.LOGGER.warn("Failed to read avatar cache index", e);
+            INDEX.clear();
+            totalSize = 0;
+            return false;
+        }
+    }
+
+    private static void writeIndex() {
+        Path dir = getAvatarCacheDirectory();
+        Path temp = dir.resolve(INDEX_FILE + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(INDEX_VERSION);
+                out.writeInt(INDEX.size());
+                for (Map.Entry<String, Entry> entry : INDEX.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().size);
+                    out.writeInt(entry.getValue().fileSize);
+                    out.writeLong(entry.getValue().lastAccess);
+                }
+            }
+            Files.move(temp, dir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING);
+            indexDirty = false;
+        } catch (Exception e) {
+            FiguraMod.LOGGER.error("Failed to save avatar cache index", e);
+        }
+    }
+
+    private static void clearDirectory() {
+        List<Path> children = IOUtils.listPaths(getAvatarCacheDirectory());
+        if (children == null)
+            return;
+
+        for (Path child : children) {
+            try {
+                if (!Files.deleteIfExists(child))
+                    throw new Exception();
+            } catch (Exception ignored) {
+                FiguraMod.debug("Failed to delete cache avatar \"{}\"", IOUtils.getFileNameOrEmpty(child));
+            }
+        }
+    }
+
+    private static class Entry {
+        private final long size;
+        private final int fileSize; //compressed
+        private long lastAccess;
+
+        private Entry(long size, int fileSize, long lastAccess) {
+            this.size = size;
+            this.fileSize = fileSize;
+            this.lastAccess = lastAccess;
+        }
+    }
 }
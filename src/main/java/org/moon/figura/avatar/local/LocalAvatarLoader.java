@@ -1,6 +1,7 @@
 package org.moon.figura.avatar.local;
 
 import net.minecraft.Util;
+import net.minecraft.nbt.ByteArrayTag;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.NbtIo;
@@ -10,6 +11,7 @@ import net.minecraft.server.packs.resources.Resource;
 import org.moon.figura.FiguraMod;
 import org.moon.figura.avatar.AvatarManager;
 import org.moon.figura.avatar.UserData;
+import org.moon.figura.config.Configs;
 import org.moon.figura.gui.FiguraToast;
 import org.moon.figura.parsers.AvatarMetadataParser;
 import org.moon.figura.parsers.BlockbenchModelParser;
@@ -20,10 +22,13 @@ import org.moon.figura.utils.IOUtils;
 
 import java.io.IOException;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
 
@@ -43,6 +48,15 @@ public class LocalAvatarLoader {
 
     private static WatchService watcher;
 
+    //wait for the file changes to settle before reloading, as editors may save several files at once
+    private static final int RELOAD_DELAY = 5;
+    private static int reloadTimer;
+    private static Path lastChangedPath;
+
+    //parsed files of the last loaded avatar, reused while they are not modified
+    private static final Map<Path, CachedFile> FILE_CACHE = new ConcurrentHashMap<>();
+    private static volatile Path cachedAvatar; //written by the loading thread, read on tick
+
     public static final HashMap<ResourceLocation, CompoundTag> CEM_AVATARS = new HashMap<>();
     public static final FiguraResourceListener AVATAR_LISTENER = new FiguraResourceListener("cem", manager -> {
         CEM_AVATARS.clear();
@@ -101,13 +115,22 @@ public class LocalAvatarLoader {
         resetWatchKeys();
         lastLoadedPath = path;
 
-        if (path == null || target == null)
+        if (path == null || target == null) {
+            FILE_CACHE.clear();
+            cachedAvatar = null;
             return;
+        }
 
         addWatchKey(path, KEYS::put);
 
         async(() -> {
             try {
+                //only keep the cache of the avatar being loaded
+                if (!path.equals(cachedAvatar)) {
+                    FILE_CACHE.clear();
+                    cachedAvatar = path;
+                }
+
                 //load as folder
                 CompoundTag nbt = new CompoundTag();
 
@@ -125,7 +148,8 @@ public class LocalAvatarLoader {
                 BlockbenchModelParser modelParser = new BlockbenchModelParser();
 
                 loadState = LoadState.MODELS;
-                CompoundTag models = loadModels(path.getFileSystem() == FileSystems.getDefault() ? path.toFile().getCanonicalPath() : path.toString(), path, modelParser, textures, animations, "");
+                long texturesStamp = getTexturesStamp(path);
+                CompoundTag models = loadModels(path.getFileSystem() == FileSystems.getDefault() ? path.toFile().getCanonicalPath() : path.toString(), path, modelParser, textures, animations, "", texturesStamp);
                 models.putString("name", "models");
 
                 //metadata
@@ -163,7 +187,9 @@ public class LocalAvatarLoader {
                         .replaceFirst(pathRegex, "")
                         .replaceAll("[/\\\\]", ".");
                 name = name.substring(0, name.length() - 4);
-                scriptsNbt.put(name, LuaScriptParser.parseScript(name, IOUtils.readFile(script)));
+                String finalName = name;
+                //the loaded avatar owns its nbt, so like models, never hand out the cached tags
+                scriptsNbt.put(name, getCached(script, Configs.FORMAT_SCRIPT.value, () -> LuaScriptParser.parseScript(finalName, IOUtils.readFile(script))).copy());
             }
             nbt.put("scripts", scriptsNbt);
         }
@@ -179,13 +205,13 @@ public class LocalAvatarLoader {
                         .replaceFirst(pathRegex, "")
                         .replaceAll("[/\\\\]", ".");
                 name = name.substring(0, name.length() - 4);
-                soundsNbt.putByteArray(name, IOUtils.readFileBytes(sound));
+                soundsNbt.put(name, getCached(sound, 0, () -> new ByteArrayTag(IOUtils.readFileBytes(sound))).copy());
             }
             nbt.put("sounds", soundsNbt);
         }
     }
 
-    private static CompoundTag loadModels(String avatarFolder, Path currentFile, BlockbenchModelParser parser, CompoundTag textures, ListTag animations, String folders) throws Exception {
+    private static CompoundTag loadModels(String avatarFolder, Path currentFile, BlockbenchModelParser parser, CompoundTag textures, ListTag animations, String folders, long texturesStamp) throws Exception {
         CompoundTag result = new CompoundTag();
         List<Path> subFiles = IOUtils.listPaths(currentFile);
         ListTag children = new ListTag();
@@ -195,18 +221,28 @@ public class LocalAvatarLoader {
                     continue;
                 String name = IOUtils.getFileNameOrEmpty(file);
                 if (Files.isDirectory(file)) {
-                    CompoundTag subfolder = loadModels(avatarFolder, file, parser, textures, animations, folders + name + ".");
+                    CompoundTag subfolder = loadModels(avatarFolder, file, parser, textures, animations, folders + name + ".", texturesStamp);
                     if (!subfolder.isEmpty()) {
                         subfolder.putString("name", name);
                         BlockbenchModelParser.parseParent(name, subfolder);
                         children.add(subfolder);
                     }
                 } else if (file.toString().toLowerCase().endsWith(".bbmodel")) {
-                    BlockbenchModelParser.ModelData data = parser.parseModel(avatarFolder, file, IOUtils.readFile(file), name.substring(0, name.length() - 8), folders);
-                    children.add(data.modelNbt());
-                    animations.addAll(data.animationList());
-
-                    CompoundTag dataTag = data.textures();
+                    //the parsed model depends on the ids given by the previous models and on the textures it reads
+                    List<Object> key = List.of(parser.getTextureOffset(), parser.getAnimationOffset(), folders, texturesStamp);
+                    CachedModel cached = getCached(file, key, () -> {
+                        BlockbenchModelParser.ModelData data = parser.parseModel(avatarFolder, file, IOUtils.readFile(file), name.substring(0, name.length() - 8), folders);
+                        return new CachedModel(data, parser.getTextureOffset(), parser.getAnimationOffset());
+                    });
+                    parser.setOffsets(cached.textureOffset, cached.animationOffset);
+
+                    //the metadata is injected on these tags later, so never hand out the cached ones
+                    BlockbenchModelParser.ModelData data = cached.data;
+                    children.add(data.modelNbt().copy());
+                    for (CompoundTag animation : data.animationList())
+                        animations.add(animation.copy());
+
+                    CompoundTag dataTag = data.textures().copy();
                     if (dataTag.isEmpty())
                         continue;
 
@@ -226,12 +262,43 @@ public class LocalAvatarLoader {
         return result;
     }
 
+    //returns the cached value of the file, or loads it again when the file or the key changed
+    @SuppressWarnings("unchecked")
+    private static <T> T getCached(Path file, Object key, FileLoader<T> loader) throws Exception {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long time = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+
+        CachedFile cached = FILE_CACHE.get(file);
+        if (cached != null && cached.time == time && cached.size == size && cached.key.equals(key))
+            return (T) cached.value;
+
+        T value = loader.load();
+        FILE_CACHE.put(file, new CachedFile(time, size, key, value));
+        return value;
+    }
+
+    //models embed their textures, so any texture change invalidates them
+    private static long getTexturesStamp(Path path) throws IOException {
+        List<Path> textures = IOUtils.getFilesByExtension(path, ".png");
+        List<Path> sorted = new ArrayList<>(textures);
+        sorted.sort(null);
+
+        long stamp = sorted.size();
+        for (Path texture : sorted) {
+            BasicFileAttributes attributes = Files.readAttributes(texture, BasicFileAttributes.class);
+            stamp = stamp * 31 + texture.hashCode();
+            stamp = stamp * 31 + attributes.lastModifiedTime().toMillis();
+            stamp = stamp * 31 + attributes.size();
+        }
+        return stamp;
+    }
+
     /**
      * Tick the watched key for hotswapping avatars
      */
     public static void tick() {
-        WatchEvent<?> event = null;
-        boolean reload = false;
+        List<Map.Entry<Path, WatchKey>> newKeys = new ArrayList<>();
 
         for (Map.Entry<Path, WatchKey> entry : KEYS.entrySet()) {
             WatchKey key = entry.getValue();
@@ -243,32 +310,33 @@ public class LocalAvatarLoader {
                 if (kind == StandardWatchEventKinds.OVERFLOW)
                     continue;
 
-                event = watchEvent;
-                Path path = entry.getKey().resolve((Path) event.context());
+                Path path = entry.getKey().resolve((Path) watchEvent.context());
                 String name = IOUtils.getFileNameOrEmpty(path);
 
                 if (IOUtils.isHidden(path) || !(Files.isDirectory(path) || name.matches("(.*(\\.lua|\\.bbmodel|\\.ogg|\\.png)$|avatar\\.json)")))
                     continue;
 
                 if (kind == StandardWatchEventKinds.ENTRY_CREATE && !IS_WINDOWS)
-                    addWatchKey(path, KEYS::put);
+                    addWatchKey(path, (p, k) -> newKeys.add(Map.entry(p, k)));
 
-                reload = true;
-                break;
+                //every new change restarts the wait
+                lastChangedPath = path;
+                reloadTimer = RELOAD_DELAY;
             }
-
-            if (reload)
-                break;
         }
 
+        for (Map.Entry<Path, WatchKey> entry : newKeys)
+            KEYS.put(entry.getKey(), entry.getValue());
+
         //reload avatar
-        if (reload) {
-            FiguraMod.debug("Detected file changes in the Avatar directory (" + event.context().toString() + "), reloading!");
+        if (reloadTimer > 0 && --reloadTimer == 0) {
+            FiguraMod.debug("Detected file changes in the Avatar directory (" + lastChangedPath + "), reloading!");
             AvatarManager.loadLocalAvatar(lastLoadedPath);
         }
     }
 
     public static void resetWatchKeys() {
+        reloadTimer = 0;
         lastLoadedPath = null;
         for (WatchKey key : KEYS.values())
             key.cancel();
@@ -317,6 +385,14 @@ public class LocalAvatarLoader {
         return loadError;
     }
 
+    private interface FileLoader<T> {
+        T load() throws Exception;
+    }
+
+    private record CachedFile(long time, long size, Object key, Object value) {}
+
+    private record CachedModel(BlockbenchModelParser.ModelData data, int textureOffset, int animationOffset) {}
+
     private enum LoadState {
         UNKNOWN,
         SCRIPTS,
@@ -11,6 +11,7 @@ import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public class HttpAPI {
 
@@ -45,6 +46,11 @@ public class HttpAPI {
 
 
     protected static void runString(HttpRequest request, BiConsumer<Integer, String> consumer) {
+        runString(request, consumer, null);
+    }
+
+    //the error consumer is told about requests that never got a response or failed while handling it
+    protected static void runString(HttpRequest request, BiConsumer<Integer, String> consumer, Consumer<Exception> error) {
         try {
             requestDebug(request);
             HttpResponse<String> response = NetworkStuff.client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
@@ -52,8 +58,10 @@ public class HttpAPI {
             if (code == 401) NetworkStuff.reAuth();
             consumer.accept(code, response.body());
         } catch (Exception e) {
-            if (!e.getMessage().contains("GOAWAY received"))
+            if (e.getMessage() == null || !e.getMessage().contains("GOAWAY received"))
                 FiguraMod.LOGGER.error("", e);
+            if (error != null)
+                error.accept(e);
         }
     }
 
@@ -92,6 +100,10 @@ public class HttpAPI {
         return header(id.toString()).build();
     }
 
+    public HttpRequest getUsers(String json) {
+        return header("users").POST(HttpRequest.BodyPublishers.ofString(json)).header("Content-Type", "application/json").build();
+    }
+
     public HttpRequest getLimits() {
         return header("limits").build();
     }
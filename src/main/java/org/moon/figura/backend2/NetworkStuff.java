@@ -4,7 +4,6 @@ import com.google.gson.*;
 import com.mojang.datafixers.util.Pair;
 import net.minecraft.Util;
 import net.minecraft.client.Minecraft;
-import net.minecraft.client.multiplayer.ClientPacketListener;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.NbtIo;
 import org.moon.figura.FiguraMod;
@@ -13,16 +12,19 @@ import org.moon.figura.avatar.AvatarManager;
 import org.moon.figura.avatar.Badges;
 import org.moon.figura.avatar.UserData;
 import org.moon.figura.avatar.local.CacheAvatarLoader;
+import org.moon.figura.backend2.RequestExecutor.Lane;
 import org.moon.figura.backend2.websocket.C2SMessageHandler;
 import org.moon.figura.backend2.websocket.WebsocketThingy;
 import org.moon.figura.config.Configs;
 import org.moon.figura.gui.FiguraToast;
 import org.moon.figura.permissions.PermissionManager;
 import org.moon.figura.permissions.Permissions;
+import org.moon.figura.utils.EntityUtils;
 import org.moon.figura.utils.FiguraText;
 import org.moon.figura.utils.RefilledNumber;
 import org.moon.figura.utils.Version;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.net.http.HttpClient;
@@ -30,11 +32,8 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.ByteBuffer;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.BitSet;
-import java.util.List;
-import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
@@ -47,12 +46,29 @@ public class NetworkStuff {
 
     private static final ConcurrentLinkedQueue<Request<HttpAPI>> API_REQUESTS = new ConcurrentLinkedQueue<>();
     private static final ConcurrentLinkedQueue<Request<WebsocketThingy>> WS_REQUESTS = new ConcurrentLinkedQueue<>();
-    private static final List<UUID> SUBSCRIPTIONS = new ArrayList<>();
-    private static CompletableFuture<Void> tasks;
+    private static final Set<UUID> SUBSCRIPTIONS = new HashSet<>();
+    private static final Set<UUID> ONLINE_PLAYERS = new HashSet<>();
+    private static final Set<UUID> CHANGED_PLAYERS = new LinkedHashSet<>();
+    private static volatile boolean resubscribe;
+    private static final RequestExecutor EXECUTOR = new RequestExecutor("Figura Backend", Configs.NETWORK_THREADS.value, Configs.NETWORK_HOST_LIMIT.value);
 
     private static final int RECONNECT = 6000; //5 min
     private static int authCheck = RECONNECT;
 
+    //users first seen within this window are fetched together
+    private static final int USER_BATCH_DELAY = 5;
+    private static final int USER_BATCH_SIZE = 100;
+    private static final Map<UUID, UserData> PENDING_USERS = new LinkedHashMap<>();
+    private static final Set<UUID> BATCHED_USERS = ConcurrentHashMap.newKeySet(); //sent, waiting for the response
+    private static int userBatchTimer;
+    private static volatile boolean batchUsers = true;
+
+    //pings sent during a tick, sent together when the backend supports it
+    private static final int MAX_PING_BATCH_SIZE = 32768;
+    private static final List<C2SMessageHandler.Ping> PENDING_PINGS = new ArrayList<>();
+    private static int pendingPingsSize;
+    private static volatile boolean batchPings, batchSubscriptions;
+
     protected static HttpAPI api;
     protected static WebsocketThingy ws;
 
@@ -70,6 +86,7 @@ public class NetworkStuff {
             uploadRate = new RefilledNumber(),
             downloadRate = new RefilledNumber();
     private static int maxAvatarSize = Integer.MAX_VALUE;
+    private static volatile boolean knownRates; //requests are only held back by the rates once the backend sent them
 
     public static void tick() {
         //limits
@@ -92,8 +109,14 @@ public class NetworkStuff {
         tickSubscriptions();
 
         //process requests
-        if (isConnected())
+        if (isConnected()) {
+            tickUserBatch();
             processRequests();
+            flushPings();
+        } else {
+            PENDING_PINGS.clear();
+            pendingPingsSize = 0;
+        }
 
         //pings counter
         if (lastPing > 0 && FiguraMod.ticks - lastPing >= 20)
@@ -101,51 +124,104 @@ public class NetworkStuff {
     }
 
     private static void tickSubscriptions() {
-        ClientPacketListener connection = Minecraft.getInstance().getConnection();
-        if (connection == null) {
-            unsubscribeAll();
+        if (Minecraft.getInstance().getConnection() == null) {
+            if (!SUBSCRIPTIONS.isEmpty() || !ONLINE_PLAYERS.isEmpty())
+                unsubscribeAll();
             return;
         }
 
-        List<UUID> unsub = new ArrayList<>(SUBSCRIPTIONS);
-        for (UUID uuid : connection.getOnlinePlayerIds()) {
-            unsub.remove(uuid);
-            if (!SUBSCRIPTIONS.contains(uuid)) {
-                SUBSCRIPTIONS.add(uuid);
-                subscribe(uuid);
-            }
+        //backend reconnected, it needs everything again
+        if (resubscribe) {
+            resubscribe = false;
+            subscribe(new ArrayList<>(SUBSCRIPTIONS));
         }
 
-        for (UUID uuid : unsub) {
-            SUBSCRIPTIONS.remove(uuid);
-            unsubscribe(uuid);
+        if (CHANGED_PLAYERS.isEmpty())
+            return;
+
+        List<UUID> sub = new ArrayList<>();
+        List<UUID> unsub = new ArrayList<>();
+        for (UUID uuid : CHANGED_PLAYERS) {
+            if (ONLINE_PLAYERS.contains(uuid)) {
+                if (SUBSCRIPTIONS.add(uuid))
+                    sub.add(uuid);
+            } else if (SUBSCRIPTIONS.remove(uuid)) {
+                unsub.add(uuid);
+            }
         }
+        CHANGED_PLAYERS.clear();
+
+        subscribe(sub);
+        unsubscribe(unsub);
+    }
+
+    //called from the player list packets, always on the main thread
+    public static void playerJoined(UUID id) {
+        if (ONLINE_PLAYERS.add(id))
+            CHANGED_PLAYERS.add(id);
+    }
+
+    public static void playerLeft(UUID id) {
+        if (ONLINE_PLAYERS.remove(id))
+            CHANGED_PLAYERS.add(id);
+    }
+
+    private static void tickUserBatch() {
+        if (PENDING_USERS.isEmpty() || --userBatchTimer > 0)
+            return;
+
+        List<UserData> users = new ArrayList<>(PENDING_USERS.values());
+        PENDING_USERS.clear();
+
+        for (int i = 0; i < users.size(); i += USER_BATCH_SIZE)
+            getUsers(new ArrayList<>(users.subList(i, Math.min(i + USER_BATCH_SIZE, users.size()))));
     }
 
     private static void processRequests() {
         if (!API_REQUESTS.isEmpty()) {
+            List<Request<HttpAPI>> delayed = new ArrayList<>();
             Request<HttpAPI> request;
             while ((request = API_REQUESTS.poll()) != null) {
+                Lane lane = request.lane;
+
+                //out of uploads for now, try again on the next ticks
+                if (lane == Lane.UPLOAD && knownRates && !uploadRate.use()) {
+                    delayed.add(request);
+                    continue;
+                }
+
+                if (lane == Lane.AVATAR) {
+                    //out of downloads for now, try again on the next ticks
+                    if (knownRates && !downloadRate.use()) {
+                        delayed.add(request);
+                        continue;
+                    }
+
+                    //players we can see get their avatars first
+                    if (EntityUtils.getEntityByUUID(request.owner) != null)
+                        lane = Lane.AVATAR_VISIBLE;
+                }
+
                 Request<HttpAPI> finalRequest = request;
-                async(() -> finalRequest.consumer.accept(api));
+                EXECUTOR.execute(lane, () -> finalRequest.consumer.accept(api));
             }
+            API_REQUESTS.addAll(delayed);
         }
 
+        //websocket messages only queue up a frame, so keep them in order on this thread
         if (!WS_REQUESTS.isEmpty()) {
             Request<WebsocketThingy> request;
-            while ((request = WS_REQUESTS.poll()) != null) {
-                Request<WebsocketThingy> finalRequest = request;
-                async(() -> finalRequest.consumer.accept(ws));
-            }
+            while ((request = WS_REQUESTS.poll()) != null)
+                request.consumer.accept(ws);
         }
     }
 
     protected static void async(Runnable toRun) {
-        if (tasks == null || tasks.isDone()) {
-            tasks = CompletableFuture.runAsync(toRun);
-        } else {
-            tasks.thenRun(toRun);
-        }
+        EXECUTOR.execute(Lane.USER, toRun);
+    }
+
+    public static void updateExecutorLimits() {
+        EXECUTOR.setLimits(Configs.NETWORK_THREADS.value, Configs.NETWORK_HOST_LIMIT.value);
     }
 
     private static boolean checkUUID(UUID id) {
@@ -206,14 +282,30 @@ public class NetworkStuff {
 
 
     private static void queueString(UUID owner, Function<HttpAPI, HttpRequest> request, BiConsumer<Integer, String> consumer) {
-        API_REQUESTS.add(new Request<>(owner, api -> HttpAPI.runString(request.apply(api), consumer)));
+        queueString(owner, Lane.USER, request, consumer);
     }
 
-    private static void queueStream(UUID owner, Function<HttpAPI, HttpRequest> request, BiConsumer<Integer, InputStream> consumer) {
-        API_REQUESTS.add(new Request<>(owner, api -> HttpAPI.runStream(request.apply(api), consumer)));
+    private static void queueString(UUID owner, Lane lane, Function<HttpAPI, HttpRequest> request, BiConsumer<Integer, String> consumer) {
+        queueString(owner, lane, request, consumer, null);
+    }
+
+    private static void queueString(UUID owner, Lane lane, Function<HttpAPI, HttpRequest> request, BiConsumer<Integer, String> consumer, Consumer<Exception> error) {
+        API_REQUESTS.add(new Request<>(owner, lane, api -> {
+            HttpRequest req = request.apply(api);
+            EXECUTOR.runLimited(req.uri(), () -> HttpAPI.runString(req, consumer, error));
+        }));
+    }
+
+    private static void queueStream(UUID owner, Lane lane, Function<HttpAPI, HttpRequest> request, BiConsumer<Integer, InputStream> consumer) {
+        API_REQUESTS.add(new Request<>(owner, lane, api -> {
+            HttpRequest req = request.apply(api);
+            EXECUTOR.runLimited(req.uri(), () -> HttpAPI.runStream(req, consumer));
+        }));
     }
 
     public static void clear(UUID requestOwner) {
+        PENDING_USERS.remove(requestOwner);
+        BATCHED_USERS.remove(requestOwner);
         API_REQUESTS.removeIf(request -> request.owner.equals(requestOwner));
     }
 
@@ -223,12 +315,17 @@ public class NetworkStuff {
 
     private static void connectAPI(String token) {
         api = new HttpAPI(token);
+        knownRates = false;
+        batchUsers = true;
+        batchPings = false;
+        batchSubscriptions = false;
         checkVersion();
         setLimits();
     }
 
     private static void disconnectAPI() {
         api = null;
+        BATCHED_USERS.clear();
         clear(Util.NIL_UUID);
     }
 
@@ -239,10 +336,11 @@ public class NetworkStuff {
                 return;
             }
 
-            HttpAPI.runString(api.checkAuth(), (code, data) -> {
+            HttpRequest request = api.checkAuth();
+            EXECUTOR.runLimited(request.uri(), () -> HttpAPI.runString(request, (code, data) -> {
                 if (code != 200)
                     reAuth();
-            });
+            }));
         });
     }
 
@@ -269,9 +367,23 @@ public class NetworkStuff {
             JsonObject rate = json.getAsJsonObject("rate");
             uploadRate.set(rate.get("upload").getAsInt() * 0.95);
             downloadRate.set(rate.get("download").getAsInt() * 0.95);
+            knownRates = true;
 
             JsonObject limits = json.getAsJsonObject("limits");
             maxAvatarSize = limits.get("maxAvatarSize").getAsInt();
+
+            //optional backend features
+            boolean pingBatch = false, subBatch = false;
+            JsonArray features = json.getAsJsonArray("features");
+            if (features != null) {
+                for (JsonElement feature : features) {
+                    String name = feature.getAsString();
+                    pingBatch |= name.equals("ping_batch");
+                    subBatch |= name.equals("sub_batch");
+                }
+            }
+            batchPings = pingBatch;
+            batchSubscriptions = subBatch;
         });
     }
 
@@ -279,6 +391,81 @@ public class NetworkStuff {
         if (checkUUID(user.id))
             return;
 
+        if (PENDING_USERS.isEmpty())
+            userBatchTimer = USER_BATCH_DELAY;
+        PENDING_USERS.put(user.id, user);
+    }
+
+    private static void getUsers(List<UserData> users) {
+        if (!batchUsers || users.size() == 1) {
+            for (UserData user : users)
+                queueUser(user);
+            return;
+        }
+
+        JsonArray ids = new JsonArray();
+        for (UserData user : users) {
+            ids.add(user.id.toString());
+            BATCHED_USERS.add(user.id);
+        }
+
+        queueString(Util.NIL_UUID, Lane.USER, api -> api.getUsers(GSON.toJson(ids)), (code, data) -> {
+            //debug
+            responseDebug("getUsers", code, data);
+
+            //backend without the batch endpoint, go back to one request per user
+            if (code == 404 || code == 405 || code == 501) {
+                batchUsers = false;
+                for (UserData user : takeBatched(users))
+                    queueUser(user);
+                return;
+            }
+
+            //error, request them one by one instead, so only users that really failed are affected
+            if (code != 200) {
+                FiguraMod.LOGGER.warn("Failed to fetch {} users at once (code {}), fetching them one by one", users.size(), code);
+                for (UserData user : takeBatched(users))
+                    queueUser(user);
+                return;
+            }
+
+            //success, a failure to parse is handled as an error below
+            JsonObject json = JsonParser.parseString(data).getAsJsonObject();
+            for (UserData user : users) {
+                if (!BATCHED_USERS.remove(user.id))
+                    continue;
+
+                JsonElement element = json.get(user.id.toString());
+                if (element == null || !element.isJsonObject()) {
+                    queueUser(user); //missing from the response, ask for it alone so it gets the usual feedback
+                    continue;
+                }
+
+                try {
+                    loadUser(user, element.getAsJsonObject());
+                } catch (Exception e) {
+                    FiguraMod.LOGGER.warn("Failed to load user " + user.id + " from a batch, fetching it alone", e);
+                    queueUser(user);
+                }
+            }
+        }, e -> {
+            FiguraMod.LOGGER.warn("Failed to fetch {} users at once, fetching them one by one", users.size());
+            for (UserData user : takeBatched(users))
+                queueUser(user);
+        });
+    }
+
+    //the users of a batch that were not cleared while it was running
+    private static List<UserData> takeBatched(List<UserData> users) {
+        List<UserData> list = new ArrayList<>(users.size());
+        for (UserData user : users) {
+            if (BATCHED_USERS.remove(user.id))
+                list.add(user);
+        }
+        return list;
+    }
+
+    private static void queueUser(UserData user) {
         queueString(user.id, api -> api.getUser(user.id), (code, data) -> {
             //debug
             responseDebug("getUser", code, data);
@@ -291,42 +478,43 @@ public class NetworkStuff {
             }
 
             //success
+            loadUser(user, JsonParser.parseString(data).getAsJsonObject());
+        });
+    }
 
-            JsonObject json = JsonParser.parseString(data).getAsJsonObject();
-
-            //avatars
-            ArrayList<Pair<String, Pair<String, UUID>>> avatars = new ArrayList<>();
+    private static void loadUser(UserData user, JsonObject json) {
+        //avatars
+        ArrayList<Pair<String, Pair<String, UUID>>> avatars = new ArrayList<>();
 
-            JsonArray equippedAvatars = json.getAsJsonArray("equipped");
-            for (JsonElement element : equippedAvatars) {
-                JsonObject entry = element.getAsJsonObject();
-                UUID owner = UUID.fromString(entry.get("owner").getAsString());
-                avatars.add(Pair.of(entry.get("hash").getAsString(), Pair.of(entry.get("id").getAsString(), owner)));
-            }
+        JsonArray equippedAvatars = json.getAsJsonArray("equipped");
+        for (JsonElement element : equippedAvatars) {
+            JsonObject entry = element.getAsJsonObject();
+            UUID owner = UUID.fromString(entry.get("owner").getAsString());
+            avatars.add(Pair.of(entry.get("hash").getAsString(), Pair.of(entry.get("id").getAsString(), owner)));
+        }
 
-            //badges
-            JsonObject badges = json.getAsJsonObject("equippedBadges");
-            Pair<BitSet, BitSet> badgesPair = Badges.emptyBadges();
-
-            JsonArray pride = badges.getAsJsonArray("pride");
-            BitSet prideSet = badgesPair.getFirst();
-            for (int i = 0; i < pride.size(); i++)
-                prideSet.set(i, pride.get(i).getAsInt() >= 1);
-
-            JsonArray special = badges.getAsJsonArray("special");
-            BitSet specialSet = badgesPair.getSecond();
-            for (int i = 0; i < special.size(); i++)
-                specialSet.set(i, special.get(i).getAsInt() >= 1);
-
-            //default permission
-            JsonElement trust = json.get("trust");
-            if (trust != null) {
-                Permissions.Category cat = Permissions.Category.indexOf(trust.getAsInt());
-                if (cat != null) PermissionManager.setDefaultFor(user.id, cat);
-            }
+        //badges
+        JsonObject badges = json.getAsJsonObject("equippedBadges");
+        Pair<BitSet, BitSet> badgesPair = Badges.emptyBadges();
+
+        JsonArray pride = badges.getAsJsonArray("pride");
+        BitSet prideSet = badgesPair.getFirst();
+        for (int i = 0; i < pride.size(); i++)
+            prideSet.set(i, pride.get(i).getAsInt() >= 1);
+
+        JsonArray special = badges.getAsJsonArray("special");
+        BitSet specialSet = badgesPair.getSecond();
+        for (int i = 0; i < special.size(); i++)
+            specialSet.set(i, special.get(i).getAsInt() >= 1);
+
+        //default permission
+        JsonElement trust = json.get("trust");
+        if (trust != null) {
+            Permissions.Category cat = Permissions.Category.indexOf(trust.getAsInt());
+            if (cat != null) PermissionManager.setDefaultFor(user.id, cat);
+        }
 
-            user.loadData(avatars, badgesPair);
-        });
+        user.loadData(avatars, badgesPair);
     }
 
     public static void uploadAvatar(Avatar avatar) {
@@ -336,9 +524,16 @@ public class NetworkStuff {
         String id = avatar.id == null || true ? "avatar" : avatar.id; //TODO - profile screen
 
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            NbtIo.writeCompressed(avatar.nbt, baos);
-            queueString(Util.NIL_UUID, api -> api.uploadAvatar(id, baos.toByteArray()), (code, data) -> {
+            //reuse the bytes compressed while loading, when there are any
+            byte[] bytes = avatar.compressedNbt;
+            if (bytes == null) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                NbtIo.writeCompressed(avatar.nbt, baos);
+                bytes = baos.toByteArray();
+            }
+
+            byte[] upload = bytes;
+            queueString(Util.NIL_UUID, Lane.UPLOAD, api -> api.uploadAvatar(id, upload), (code, data) -> {
                 responseDebug("uploadAvatar", code, data);
 
                 if (code == 200) {
@@ -355,8 +550,6 @@ public class NetworkStuff {
                     default -> FiguraToast.sendToast(FiguraText.of("backend.upload_error"), FiguraToast.ToastType.ERROR);
                 }
             });
-            uploadRate.use();
-            baos.close();
         } catch (Exception e) {
             FiguraMod.LOGGER.error("", e);
         }
@@ -396,7 +589,7 @@ public class NetworkStuff {
         if (checkUUID(target.id))
             return;
 
-        queueStream(target.id, api -> api.getAvatar(owner, id), (code, stream) -> {
+        queueStream(target.id, Lane.AVATAR, api -> api.getAvatar(owner, id), (code, stream) -> {
             String s;
             try {
                 s = code == 200 ? "<avatar data>" : new String(stream.readAllBytes());
@@ -411,14 +604,15 @@ public class NetworkStuff {
 
             //success
             try {
-                CompoundTag nbt = NbtIo.readCompressed(stream);
-                CacheAvatarLoader.save(hash, nbt);
-                target.loadAvatar(nbt);
+                //keep the compressed size, so it does not need to be compressed again just to measure it
+                byte[] bytes = stream.readAllBytes();
+                CompoundTag nbt = NbtIo.readCompressed(new ByteArrayInputStream(bytes));
+                CacheAvatarLoader.save(hash, nbt, bytes.length);
+                target.loadAvatar(nbt, bytes.length);
             } catch (Exception e) {
                 FiguraMod.LOGGER.error("Failed to load avatar for " + target.id, e);
             }
         });
-        downloadRate.use();
     }
 
 
@@ -444,6 +638,11 @@ public class NetworkStuff {
         if (!AvatarManager.localUploaded || !isConnected())
             return;
 
+        if (batchPings) {
+            queuePing(new C2SMessageHandler.Ping(id, sync, data));
+            return;
+        }
+
         try {
             ByteBuffer buffer = C2SMessageHandler.ping(id, sync, data);
             ws.send(buffer);
@@ -455,45 +654,96 @@ public class NetworkStuff {
         }
     }
 
-    private static void subscribe(UUID id) {
-        if (checkUUID(id) || !checkWS())
+    private static void queuePing(C2SMessageHandler.Ping ping) {
+        //latest wins, replace the older ping of the same function
+        if (Configs.COALESCE_PINGS.value) {
+            for (int i = 0; i < PENDING_PINGS.size(); i++) {
+                C2SMessageHandler.Ping old = PENDING_PINGS.get(i);
+                if (old.id() == ping.id() && old.sync() == ping.sync()) {
+                    PENDING_PINGS.set(i, ping);
+                    pendingPingsSize += ping.data().length - old.data().length;
+                    return;
+                }
+            }
+        }
+
+        if (pendingPingsSize + ping.data().length > MAX_PING_BATCH_SIZE)
+            flushPings();
+
+        PENDING_PINGS.add(ping);
+        pendingPingsSize += ping.data().length;
+    }
+
+    private static void flushPings() {
+        if (PENDING_PINGS.isEmpty())
             return;
 
-        WS_REQUESTS.add(new Request<>(Util.NIL_UUID, client -> {
+        try {
+            ByteBuffer buffer = C2SMessageHandler.pingBatch(PENDING_PINGS);
+            ws.send(buffer);
+
+            pingsSent += PENDING_PINGS.size();
+            if (lastPing == 0) lastPing = FiguraMod.ticks;
+        } catch (Exception e) {
+            FiguraMod.LOGGER.error("Failed to send pings", e);
+        }
+
+        PENDING_PINGS.clear();
+        pendingPingsSize = 0;
+    }
+
+    private static void subscribe(List<UUID> ids) {
+        ids.removeIf(NetworkStuff::checkUUID);
+        if (ids.isEmpty() || !checkWS())
+            return;
+
+        boolean batch = batchSubscriptions;
+        WS_REQUESTS.add(new Request<>(Util.NIL_UUID, Lane.USER, client -> {
             try {
-                ByteBuffer buffer = C2SMessageHandler.sub(id);
-                client.send(buffer);
-                if (debug) FiguraMod.debug("Subbed to " + id);
+                if (batch) {
+                    client.send(C2SMessageHandler.sub(ids));
+                } else {
+                    for (UUID id : ids)
+                        client.send(C2SMessageHandler.sub(id));
+                }
+                if (debug) FiguraMod.debug("Subbed to " + ids);
             } catch (Exception e) {
-                FiguraMod.LOGGER.error("Failed to subscribe to " + id, e);
+                FiguraMod.LOGGER.error("Failed to subscribe to " + ids, e);
             }
         }));
     }
 
-    private static void unsubscribe(UUID id) {
-        if (checkUUID(id) || !checkWS())
+    private static void unsubscribe(List<UUID> ids) {
+        ids.removeIf(NetworkStuff::checkUUID);
+        if (ids.isEmpty() || !checkWS())
             return;
 
-        WS_REQUESTS.add(new Request<>(Util.NIL_UUID, client -> {
+        boolean batch = batchSubscriptions;
+        WS_REQUESTS.add(new Request<>(Util.NIL_UUID, Lane.USER, client -> {
             try {
-                ByteBuffer buffer = C2SMessageHandler.unsub(id);
-                client.send(buffer);
-                if (debug) FiguraMod.debug("Unsubbed to " + id);
+                if (batch) {
+                    client.send(C2SMessageHandler.unsub(ids));
+                } else {
+                    for (UUID id : ids)
+                        client.send(C2SMessageHandler.unsub(id));
+                }
+                if (debug) FiguraMod.debug("Unsubbed to " + ids);
             } catch (Exception e) {
-                FiguraMod.LOGGER.error("Failed to unsubscribe to " + id, e);
+                FiguraMod.LOGGER.error("Failed to unsubscribe to " + ids, e);
             }
         }));
     }
 
+    //may be called from the websocket thread, so the actual work is done on the next tick
     public static void subscribeAll() {
-        for (UUID uuid : SUBSCRIPTIONS)
-            subscribe(uuid);
+        resubscribe = true;
     }
 
     public static void unsubscribeAll() {
-        for (UUID uuid : SUBSCRIPTIONS)
-            unsubscribe(uuid);
+        unsubscribe(new ArrayList<>(SUBSCRIPTIONS));
         SUBSCRIPTIONS.clear();
+        ONLINE_PLAYERS.clear();
+        CHANGED_PLAYERS.clear();
     }
 
 
@@ -533,7 +783,7 @@ public class NetworkStuff {
     // -- request subclass -- //
 
 
-    private record Request<T>(UUID owner, Consumer<T> consumer) {
+    private record Request<T>(UUID owner, Lane lane, Consumer<T> consumer) {
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
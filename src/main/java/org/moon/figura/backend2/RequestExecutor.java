@@ -0,0 +1,150 @@
+package org.moon.figura.backend2;
+
+import org.moon.figura.FiguraMod;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs backend requests on a small pool of threads.
+ * Queued requests are picked by lane first and then in the order they were added,
+ * and only a limited amount of requests can be talking to the same host at once,
+ * the others wait for a free slot without holding a thread.
+ */
+public class RequestExecutor {
+
+    //ordered from the highest to the lowest priority
+    public enum Lane {
+        USER,
+        UPLOAD,
+        AVATAR_VISIBLE,
+        AVATAR
+    }
+
+    private static final ThreadLocal<Task> CURRENT = new ThreadLocal<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private volatile int hostLimit;
+
+    public RequestExecutor(String name, int threads, int hostLimit) {
+        threads = Math.max(threads, 1);
+        this.hostLimit = Math.max(hostLimit, 1);
+
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, name + " #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        //the queue is unbounded, so the pool never grows past its core size
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), factory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public void execute(Lane lane, Runnable runnable) {
+        executor.execute(new Task(lane.ordinal(), sequence.getAndIncrement(), runnable));
+    }
+
+    public void setLimits(int threads, int hostLimit) {
+        threads = Math.max(threads, 1);
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+
+        hostLimit = Math.max(hostLimit, 1);
+        if (this.hostLimit != hostLimit) {
+            //the running counts are kept, so a lower limit only holds new requests back until enough of them finish
+            this.hostLimit = hostLimit;
+            for (Host host : hosts.values())
+                startWaiting(host);
+        }
+    }
+
+    //runs right away when the host has a free slot, otherwise the request waits for one without holding a worker
+    public void runLimited(URI uri, Runnable runnable) {
+        String name = uri.getHost();
+        if (name == null) {
+            runnable.run();
+            return;
+        }
+
+        Host host = hosts.computeIfAbsent(name, h -> new Host());
+        Runnable limited = () -> {
+            try {
+                runnable.run();
+            } finally {
+                synchronized (host) {
+                    host.running--;
+                }
+                startWaiting(host);
+            }
+        };
+
+        synchronized (host) {
+            if (host.running >= hostLimit) {
+                //keep the place of the request that asked for it
+                Task current = CURRENT.get();
+                host.waiting.add(current != null
+                        ? new Task(current.priority, current.order, limited)
+                        : new Task(Lane.USER.ordinal(), sequence.getAndIncrement(), limited));
+                return;
+            }
+            host.running++;
+        }
+
+        limited.run();
+    }
+
+    //hands the free slots of a host to its waiting requests
+    private void startWaiting(Host host) {
+        synchronized (host) {
+            Task task;
+            while (host.running < hostLimit && (task = host.waiting.poll()) != null) {
+                host.running++;
+                executor.execute(task);
+            }
+        }
+    }
+
+    private static class Host {
+        private int running;
+        private final Queue<Task> waiting = new PriorityQueue<>();
+    }
+
+    private record Task(int priority, long order, Runnable runnable) implements Runnable, Comparable<Task> {
+        @Override
+        public void run() {
+            Task previous = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                FiguraMod.LOGGER.error("Failed to run backend request", e);
+            } finally {
+                CURRENT.set(previous);
+            }
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            int compare = Integer.compare(priority, o.priority);
+            return compare != 0 ? compare : Long.compare(order, o.order);
+        }
+    }
+}
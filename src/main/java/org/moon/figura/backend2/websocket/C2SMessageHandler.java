@@ -5,6 +5,8 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public class C2SMessageHandler {
@@ -14,7 +16,8 @@ public class C2SMessageHandler {
             TOKEN = 0,
             PING = 1,
             SUB = 2, //owo
-            UNSUB = 3;
+            UNSUB = 3,
+            PING_BATCH = 4;
 
     public static ByteBuffer auth(String token) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -27,17 +30,34 @@ public class C2SMessageHandler {
         return ByteBuffer.wrap(baos.toByteArray());
     }
 
-    public static ByteBuffer ping(int id, boolean sync, byte[] data) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        DataOutputStream dos = new DataOutputStream(baos);
+    public static ByteBuffer ping(int id, boolean sync, byte[] data) {
+        ByteBuffer buffer = ByteBuffer.allocate(6 + data.length);
 
-        dos.writeByte(PING);
-        dos.writeInt(id);
-        dos.writeBoolean(sync);
-        dos.write(data);
-        dos.close();
+        buffer.put(PING);
+        buffer.putInt(id);
+        buffer.put((byte) (sync ? 1 : 0));
+        buffer.put(data);
 
-        return ByteBuffer.wrap(baos.toByteArray());
+        return buffer.flip();
+    }
+
+    public static ByteBuffer pingBatch(List<Ping> pings) {
+        int size = 3;
+        for (Ping ping : pings)
+            size += 9 + ping.data.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        buffer.put(PING_BATCH);
+        buffer.putShort((short) pings.size());
+        for (Ping ping : pings) {
+            buffer.putInt(ping.id);
+            buffer.put((byte) (ping.sync ? 1 : 0));
+            buffer.putInt(ping.data.length);
+            buffer.put(ping.data);
+        }
+
+        return buffer.flip();
     }
 
     public static ByteBuffer sub(UUID id) throws IOException {
@@ -62,8 +82,28 @@ public class C2SMessageHandler {
         return ByteBuffer.wrap(baos.toByteArray());
     }
 
+    public static ByteBuffer sub(Collection<UUID> ids) {
+        return uuids(SUB, ids);
+    }
+
+    public static ByteBuffer unsub(Collection<UUID> ids) {
+        return uuids(UNSUB, ids);
+    }
+
+    private static ByteBuffer uuids(byte type, Collection<UUID> ids) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + ids.size() * 16);
+
+        buffer.put(type);
+        for (UUID id : ids)
+            buffer.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+
+        return buffer.flip();
+    }
+
     public static void writeUUID(UUID id, DataOutputStream dos) throws IOException {
         dos.writeLong(id.getMostSignificantBits());
         dos.writeLong(id.getLeastSignificantBits());
     }
+
+    public record Ping(int id, boolean sync, byte[] data) {}
 }
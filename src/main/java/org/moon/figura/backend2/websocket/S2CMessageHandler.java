@@ -23,7 +23,8 @@ public class S2CMessageHandler {
         EVENT = 2,
         TOAST = 3,
         CHAT = 4,
-        NOTICE = 5;
+        NOTICE = 5,
+        PING_BATCH = 6;
 
     public static void handle(ByteBuffer bytes) {
         if (!bytes.hasRemaining())
@@ -40,6 +41,7 @@ public class S2CMessageHandler {
             case TOAST -> toast(bytes);
             case CHAT -> chat(bytes);
             case NOTICE -> notice(bytes);
+            case PING_BATCH -> pingBatch(bytes);
         }
     }
 
@@ -64,6 +66,30 @@ public class S2CMessageHandler {
         byte[] data = new byte[bytes.remaining()];
         bytes.get(data);
 
+        runPing(avatar, id, data);
+    }
+
+    //all pings sent by one player during a tick, each one length prefixed
+    private static void pingBatch(ByteBuffer bytes) {
+        UUID uuid = new UUID(bytes.getLong(), bytes.getLong());
+
+        Avatar avatar = AvatarManager.getLoadedAvatar(uuid);
+        if (avatar == null)
+            return;
+
+        int count = bytes.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int id = bytes.getInt();
+            bytes.get(); //sync value is ignored
+
+            byte[] data = new byte[bytes.getInt()];
+            bytes.get(data);
+
+            runPing(avatar, id, data);
+        }
+    }
+
+    private static void runPing(Avatar avatar, int id, byte[] data) {
         avatar.runPing(id, data);
         NetworkStuff.pingsReceived++;
         if (NetworkStuff.lastPing == 0) NetworkStuff.lastPing = FiguraMod.ticks;
@@ -239,6 +239,7 @@ public class Configs {
     public static final EnumConfig
             LOG_PINGS = new EnumConfig("log_pings", DEV, 0, 3);
     public static final BoolConfig
+            COALESCE_PINGS = new BoolConfig("coalesce_pings", DEV, false),
             SYNC_PINGS = new BoolConfig("sync_pings", DEV, false) {{
                 String tooltip = "config.sync_pings.tooltip.";
                 this.tooltip = FiguraText.of(tooltip + "1")
@@ -271,6 +272,21 @@ public class Configs {
                     NetworkStuff.reAuth();
                 }
             };
+    public static final PositiveIntConfig
+            NETWORK_THREADS = new PositiveIntConfig("network_threads", DEV, 4) {
+                @Override
+                public void onChange() {
+                    super.onChange();
+                    NetworkStuff.updateExecutorLimits();
+                }
+            },
+            NETWORK_HOST_LIMIT = new PositiveIntConfig("network_host_limit", DEV, 4) {
+                @Override
+                public void onChange() {
+                    super.onChange();
+                    NetworkStuff.updateExecutorLimits();
+                }
+            };
     @SuppressWarnings("unused")
     public static final ButtonConfig
             CLEAR_CACHE = new ButtonConfig("clear_cache", DEV, () -> {
@@ -290,5 +306,6 @@ public class Configs {
             });
     public static final BoolConfig
             FORCE_SMOOTH_AVATAR = new BoolConfig("force_smooth_avatar", DEV, false),
+            BAKE_ANIMATIONS = new BoolConfig("bake_animations", DEV, false),
             GUI_FPS = new BoolConfig("gui_fps", DEV, false);
 }
@@ -60,6 +60,7 @@ public class FiguraLuaRuntime {
     private final LuaValue setHookFunction;
     protected final Map<String, String> scripts = new HashMap<>();
     private final Map<String, Varargs> loadedScripts = new HashMap<>();
+    private final Map<String, Map<String, Object>> compiledChunks = new HashMap<>();
     private final Stack<String> loadingScripts = new Stack<>();
     public final LuaTypeManager typeManager = new LuaTypeManager();
 
@@ -105,7 +106,7 @@ public class FiguraLuaRuntime {
             entityAPI = null;
             val = NullEntity.INSTANCE;
         } else {
-            val = entityAPI = EntityAPI.wrap(user);
+            val = entityAPI = typeManager.wrapEntity(user);
         }
 
         userGlobals.set("user", typeManager.javaToLua(val).arg1());
@@ -424,6 +425,27 @@ public class FiguraLuaRuntime {
         return userGlobals.load(src, name, userGlobals);
     }
 
+    /**
+     * Same as load, but each chunk is only compiled once for this runtime, for code that runs over and over like animations.
+     * Compile errors are remembered as well, and thrown again on every call.
+     */
+    public LuaValue loadCached(String name, String src) {
+        Map<String, Object> chunks = compiledChunks.computeIfAbsent(name, n -> new HashMap<>());
+        Object chunk = chunks.get(src);
+        if (chunk == null) {
+            try {
+                chunk = load(name, src);
+            } catch (LuaError e) {
+                chunk = e;
+            }
+            chunks.put(src, chunk);
+        }
+
+        if (chunk instanceof LuaError e)
+            throw e;
+        return (LuaValue) chunk;
+    }
+
     public Varargs run(Object toRun, Avatar.Instructions limit, Object... args) {
         //parse args
         LuaValue[] values = new LuaValue[args.length];
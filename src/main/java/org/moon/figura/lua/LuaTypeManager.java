@@ -1,22 +1,35 @@
 package org.moon.figura.lua;
 
 import net.minecraft.network.chat.Component;
+import net.minecraft.world.entity.Entity;
 import org.luaj.vm2.*;
 import org.luaj.vm2.lib.OneArgFunction;
 import org.luaj.vm2.lib.TwoArgFunction;
 import org.luaj.vm2.lib.VarArgFunction;
+import org.moon.figura.lua.api.entity.EntityAPI;
 import org.moon.figura.lua.docs.FiguraDocsManager;
 import org.moon.figura.lua.docs.LuaTypeDoc;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * One LuaTypeManager per LuaRuntime, so that people can be allowed to edit the metatables within.
+ * The reflection behind those metatables is only done once per class, and shared between every runtime.
  */
 public class LuaTypeManager {
 
+    //process-wide, immutable once built
+    private static final Map<Class<?>, ClassTemplate> CLASS_TEMPLATES = new ConcurrentHashMap<>();
+    private static final Map<Method, MethodTemplate> METHOD_TEMPLATES = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, String> NAMES_CACHE = new ConcurrentHashMap<>();
+
     private final Map<Class<?>, LuaTable> metatables = new HashMap<>();
+    private final EntityAPI.Cache entityWrappers = new EntityAPI.Cache();
 
     public void generateMetatableFor(Class<?> clazz) {
         if (metatables.containsKey(clazz))
@@ -29,54 +42,39 @@ public class LuaTypeManager {
             generateMetatableFor(clazz.getSuperclass());
         } catch (IllegalArgumentException ignored) {}
 
+        ClassTemplate template = CLASS_TEMPLATES.computeIfAbsent(clazz, ClassTemplate::new);
+
         LuaTable metatable = new LuaTable();
 
         LuaTable indexTable = new LuaTable();
-        Class<?> currentClass = clazz;
-        while (currentClass.isAnnotationPresent(LuaWhitelist.class)) {
-            for (Method method : currentClass.getDeclaredMethods()) {
-                if (!method.isAnnotationPresent(LuaWhitelist.class)) {
-                    continue;
-                }
-                String name = method.getName();
-                if (name.startsWith("__")) { //metamethods
-                    if (metatable.rawget(name) == LuaValue.NIL) { //Only add the most recently declared metamethod, in the most specific subclass.
-                        if (name.equals("__index")) {
-                            //Custom __index implementation. First checks the regular __index table, and if it gets NIL, then calls the custom-defined __index function.
-                            metatable.set("__index", new TwoArgFunction() {
-                                final LuaFunction wrappedIndexer = getWrapper(method);
-                                @Override
-                                public LuaValue call(LuaValue arg1, LuaValue arg2) {
-                                    LuaValue result = indexTable.get(arg2);
-                                    if (result == LuaValue.NIL)
-                                        result = wrappedIndexer.call(arg1, arg2);
-                                    return result;
-                                }
-                            });
-                        } else {
-                            metatable.set(name, getWrapper(method));
-                        }
+        for (Map.Entry<String, MethodTemplate> entry : template.methods.entrySet())
+            indexTable.set(entry.getKey(), getWrapper(entry.getValue()));
+
+        for (Map.Entry<String, MethodTemplate> entry : template.metamethods.entrySet()) {
+            String name = entry.getKey();
+            if (name.equals("__index")) {
+                //Custom __index implementation. First checks the regular __index table, and if it gets NIL, then calls the custom-defined __index function.
+                metatable.set("__index", new TwoArgFunction() {
+                    final LuaFunction wrappedIndexer = getWrapper(entry.getValue());
+                    @Override
+                    public LuaValue call(LuaValue arg1, LuaValue arg2) {
+                        LuaValue result = indexTable.get(arg2);
+                        if (result == LuaValue.NIL)
+                            result = wrappedIndexer.call(arg1, arg2);
+                        return result;
                     }
-                } else { //regular methods
-                    indexTable.set(name, getWrapper(method));
-                }
+                });
+            } else {
+                metatable.set(name, getWrapper(entry.getValue()));
             }
-            currentClass = currentClass.getSuperclass();
         }
 
         if (metatable.rawget("__index") == LuaValue.NIL)
             metatable.set("__index", indexTable);
 
         //if we don't have a special toString, then have our toString give the type name from the annotation
-        if (metatable.rawget("__tostring") == LuaValue.NIL) {
-            metatable.set("__tostring", new OneArgFunction() {
-                private final LuaString val = LuaString.valueOf(clazz.getName());
-                @Override
-                public LuaValue call(LuaValue arg) {
-                    return val;
-                }
-            });
-        }
+        if (metatable.rawget("__tostring") == LuaValue.NIL)
+            metatable.set("__tostring", template.toStringFunction);
 
         //if we don't have a special __index, then have our indexer look in the next metatable up in the java inheritance.
         if (indexTable.rawget("__index") == LuaValue.NIL) {
@@ -102,15 +100,52 @@ public class LuaTypeManager {
         }
     }
 
-    private final Map<Class<?>, String> namesCache = new HashMap<>();
     public String getTypeName(Class<?> clazz) {
-        return namesCache.computeIfAbsent(clazz, someClass -> {
+        return NAMES_CACHE.computeIfAbsent(clazz, someClass -> {
             if (someClass.isAnnotationPresent(LuaTypeDoc.class))
                 return someClass.getAnnotation(LuaTypeDoc.class).name();
             return someClass.getSimpleName();
         });
     }
 
+    /**
+     * The whitelisted methods of a class and its whitelisted superclasses, in the same order they used to be
+     * added to the metatables: later regular methods replace earlier ones, while only the most specific metamethod is kept.
+     */
+    private static class ClassTemplate {
+        private final Map<String, MethodTemplate> methods = new LinkedHashMap<>();
+        private final Map<String, MethodTemplate> metamethods = new LinkedHashMap<>();
+        private final LuaFunction toStringFunction;
+
+        private ClassTemplate(Class<?> clazz) {
+            Class<?> currentClass = clazz;
+            while (currentClass.isAnnotationPresent(LuaWhitelist.class)) {
+                for (Method method : currentClass.getDeclaredMethods()) {
+                    if (!method.isAnnotationPresent(LuaWhitelist.class))
+                        continue;
+                    String name = method.getName();
+                    if (name.startsWith("__")) //metamethods
+                        metamethods.putIfAbsent(name, getTemplate(method));
+                    else //regular methods
+                        methods.put(name, getTemplate(method));
+                }
+                currentClass = currentClass.getSuperclass();
+            }
+
+            LuaString val = LuaString.valueOf(clazz.getName());
+            toStringFunction = new OneArgFunction() {
+                @Override
+                public LuaValue call(LuaValue arg) {
+                    return val;
+                }
+            };
+        }
+    }
+
+    private static MethodTemplate getTemplate(Method method) {
+        return METHOD_TEMPLATES.computeIfAbsent(method, MethodTemplate::new);
+    }
+
     private static boolean[] getRequiredNotNil(Method method) {
         Parameter[] params = method.getParameters();
         boolean[] result = new boolean[params.length];
@@ -120,76 +155,173 @@ public class LuaTypeManager {
         return result;
     }
 
-    public VarArgFunction getWrapper(Method method) {
-        return new VarArgFunction() {
+    /**
+     * Converts a single lua argument into the java type of a parameter.
+     * Resolved once per parameter when the wrapper is created, so calls don't need to look at the type again.
+     */
+    @FunctionalInterface
+    private interface ArgConverter {
+        Object convert(Varargs args, int index);
+    }
 
-            private final boolean isStatic = Modifier.isStatic(method.getModifiers());
-            private Object caller;
+    private static ArgConverter getConverter(Class<?> type) {
+        if (type == Number.class || type == Double.class || type == double.class)
+            return Varargs::checkdouble;
+        if (type == String.class)
+            return Varargs::checkjstring;
+        if (type == Boolean.class || type == boolean.class)
+            return Varargs::toboolean;
+        if (type == Float.class || type == float.class)
+            return (args, i) -> (float) args.checkdouble(i);
+        if (type == Integer.class || type == int.class)
+            return Varargs::checkint;
+        if (type == Long.class || type == long.class)
+            return Varargs::checklong;
+        if (type == LuaTable.class)
+            return Varargs::checktable;
+        if (type == LuaFunction.class)
+            return Varargs::checkfunction;
+        if (type == LuaValue.class)
+            return Varargs::arg;
+        if (type == Object.class)
+            return (args, i) -> luaToJava(args.arg(i));
+        if (type.isArray()) {
+            ArgConverter element = getVarargConverter(type);
+            return (args, i) -> luaVarargToJava(args, i, type, element);
+        }
+        return (args, i) -> args.checkuserdata(i, type);
+    }
 
+    //element types arrays were always converted to
+    private static final Set<Class<?>> VARARG_TYPES = Set.of(
+            Number.class, Double.class, double.class, String.class, Boolean.class,
+            Float.class, float.class, Integer.class, int.class, Long.class, long.class,
+            LuaTable.class, LuaFunction.class, LuaValue.class, Object.class
+    );
+
+    private static ArgConverter getVarargConverter(Class<?> arrayType) {
+        Class<?> type = arrayType.getComponentType();
+        //byte arrays were always read as booleans
+        if (type == byte.class)
+            return Varargs::toboolean;
+        if (VARARG_TYPES.contains(type))
+            return getConverter(type);
+        //other arrays were always checked against the array type, keep doing so
+        return (args, i) -> args.checkuserdata(i, arrayType);
+    }
 
-            private final Class<?> clazz = method.getDeclaringClass();
-            private final Class<?>[] argumentTypes = method.getParameterTypes();
-            private final Object[] actualArgs = new Object[argumentTypes.length];
-            private final boolean[] requiredNotNil = getRequiredNotNil(method);
+    private static Object getDefaultValue(Class<?> type) {
+        if (type == double.class) return 0D;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        if (type == boolean.class) return false;
+        return null;
+    }
 
-            @Override
-            public Varargs invoke(Varargs args) {
+    //Invokes the method with the receiver (if any) as the first element of the array
+    //null when the method is not accessible, which is reported once it is called
+    private static MethodHandle getInvoker(Method method, int argCount) {
+        try {
+            return MethodHandles.lookup().unreflect(method)
+                    .asFixedArity()
+                    .asType(MethodType.genericMethodType(argCount))
+                    .asSpreader(Object[].class, argCount);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Everything about a whitelisted method that does not depend on the runtime calling it.
+     */
+    private static class MethodTemplate {
+        private final Method method;
+        private final boolean isStatic;
+        private final Class<?> clazz;
+        private final Class<?>[] argumentTypes;
+        private final boolean[] requiredNotNil;
+        private final boolean firstArgIsCaller;
+        private final int receiver;
+        private final MethodHandle invoker;
+        private final ArgConverter[] converters;
+        private final Object[] defaults;
+
+        private MethodTemplate(Method method) {
+            this.method = method;
+            this.isStatic = Modifier.isStatic(method.getModifiers());
+            this.clazz = method.getDeclaringClass();
+            this.argumentTypes = method.getParameterTypes();
+            this.requiredNotNil = getRequiredNotNil(method);
+            this.firstArgIsCaller = argumentTypes.length > 0 && argumentTypes[0].isAssignableFrom(clazz);
+            this.receiver = isStatic ? 0 : 1;
+            this.invoker = getInvoker(method, argumentTypes.length + receiver);
+            this.converters = new ArgConverter[argumentTypes.length];
+            this.defaults = new Object[argumentTypes.length];
+            for (int i = 0; i < argumentTypes.length; i++) {
+                converters[i] = getConverter(argumentTypes[i]);
+                defaults[i] = getDefaultValue(argumentTypes[i]);
+            }
+        }
 
-                if (!isStatic)
-                    caller = args.checkuserdata(1, clazz);
-
-                //dirty hack for QOL of ignoring the first argument if the method is static and the arg matches the class type
-                int offset = isStatic && argumentTypes.length > 0 && !argumentTypes[0].isAssignableFrom(clazz) && args.isuserdata(1) && clazz.isAssignableFrom(args.checkuserdata(1).getClass()) ? 1 : 0;
-
-                //Fill in actualArgs from args
-                for (int i = 0; i < argumentTypes.length; i++) {
-                    int argIndex = i + (isStatic ? 1 : 2) + offset;
-                    boolean nil = args.isnil(argIndex);
-                    if (nil && requiredNotNil[i])
-                        throw new LuaError("bad argument: " + method.getName() + " " + argIndex + " do not allow nil values, expected " + FiguraDocsManager.getNameFor(argumentTypes[i]));
-                    if (argIndex <= args.narg() && !nil) {
-                        try {
-                            actualArgs[i] = switch (argumentTypes[i].getName()) {
-                                case "java.lang.Number", "java.lang.Double", "double" -> args.checkdouble(argIndex);
-                                case "java.lang.String" -> args.checkjstring(argIndex);
-                                case "java.lang.Boolean", "boolean" -> args.toboolean(argIndex);
-                                case "java.lang.Float", "float" -> (float) args.checkdouble(argIndex);
-                                case "java.lang.Integer", "int" -> args.checkint(argIndex);
-                                case "java.lang.Long", "long" -> args.checklong(argIndex);
-                                case "org.luaj.vm2.LuaTable" -> args.checktable(argIndex);
-                                case "org.luaj.vm2.LuaFunction" -> args.checkfunction(argIndex);
-                                case "org.luaj.vm2.LuaValue" -> args.arg(argIndex);
-                                case "java.lang.Object" -> luaToJava(args.arg(argIndex));
-                                default -> argumentTypes[i].getName().startsWith("[") ? luaVarargToJava(args, argIndex, argumentTypes[i]) : args.checkuserdata(argIndex, argumentTypes[i]);
-                            };
-                        } catch (LuaError err) {
-                            String expectedType = FiguraDocsManager.getNameFor(argumentTypes[i]);
-                            String actualType;
-                            if (args.arg(argIndex).type() == LuaValue.TUSERDATA)
-                                actualType = FiguraDocsManager.getNameFor(args.arg(argIndex).checkuserdata().getClass());
-                            else
-                                actualType = args.arg(argIndex).typename();
-                            throw new LuaError("Invalid argument " + argIndex + " to function " + method.getName() + ". Expected " + expectedType + ", but got " + actualType);
-                        }
-                    } else {
-                        actualArgs[i] = switch (argumentTypes[i].getName()) {
-                            case "double" -> 0D;
-                            case "int" -> 0;
-                            case "long" -> 0L;
-                            case "float" -> 0f;
-                            case "boolean" -> false;
-                            default -> null;
-                        };
+        private Object invoke(Varargs args) {
+            //a fresh array per call keeps the wrapper reentrant
+            Object[] actualArgs = new Object[argumentTypes.length + receiver];
+
+            if (!isStatic)
+                actualArgs[0] = args.checkuserdata(1, clazz);
+
+            //dirty hack for QOL of ignoring the first argument if the method is static and the arg matches the class type
+            int offset = isStatic && argumentTypes.length > 0 && !firstArgIsCaller && args.isuserdata(1) && clazz.isAssignableFrom(args.checkuserdata(1).getClass()) ? 1 : 0;
+
+            //Fill in actualArgs from args
+            int narg = args.narg();
+            for (int i = 0; i < argumentTypes.length; i++) {
+                int argIndex = i + (isStatic ? 1 : 2) + offset;
+                boolean nil = args.isnil(argIndex);
+                if (nil && requiredNotNil[i])
+                    throw new LuaError("bad argument: " + method.getName() + " " + argIndex + " do not allow nil values, expected " + FiguraDocsManager.getNameFor(argumentTypes[i]));
+                if (argIndex <= narg && !nil) {
+                    try {
+                        actualArgs[i + receiver] = converters[i].convert(args, argIndex);
+                    } catch (LuaError err) {
+                        String expectedType = FiguraDocsManager.getNameFor(argumentTypes[i]);
+                        String actualType;
+                        if (args.arg(argIndex).type() == LuaValue.TUSERDATA)
+                            actualType = FiguraDocsManager.getNameFor(args.arg(argIndex).checkuserdata().getClass());
+                        else
+                            actualType = args.arg(argIndex).typename();
+                        throw new LuaError("Invalid argument " + argIndex + " to function " + method.getName() + ". Expected " + expectedType + ", but got " + actualType);
                     }
+                } else {
+                    actualArgs[i + receiver] = defaults[i];
                 }
+            }
 
-                //Invoke the wrapped method
-                Object result;
-                try {
-                    result = method.invoke(caller, actualArgs);
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    throw e.getCause() instanceof LuaError l ? l : new LuaError(e.getCause());
-                }
+            //Invoke the wrapped method
+            if (invoker == null)
+                throw new LuaError("Cannot access method " + method.getName());
+
+            try {
+                return invoker.invokeExact(actualArgs);
+            } catch (LuaError e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new LuaError(e);
+            }
+        }
+    }
+
+    public VarArgFunction getWrapper(Method method) {
+        return getWrapper(getTemplate(method));
+    }
+
+    //the only per-runtime part of a wrapper is converting the result, which needs this runtime's metatables
+    private VarArgFunction getWrapper(MethodTemplate template) {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                Object result = template.invoke(args);
 
                 //Convert the return value
                 return result instanceof Varargs v ? v : javaToLua(result);
@@ -197,7 +329,7 @@ public class LuaTypeManager {
 
             @Override
             public String tojstring() {
-                return "function: " + method.getName();
+                return "function: " + template.method.getName();
             }
         };
     }
@@ -250,33 +382,20 @@ public class LuaTypeManager {
         return LuaValue.varargsOf(args);
     }
 
-    public Object luaVarargToJava(Varargs args, int argIndex, Class<?> argumentType) {
+    private static Object luaVarargToJava(Varargs args, int argIndex, Class<?> argumentType, ArgConverter converter) {
         if (args.arg(argIndex).istable()) {
-            return luaVarargToJava(args.checktable(argIndex).unpack(), 1, argumentType);
+            return luaVarargToJava(args.checktable(argIndex).unpack(), 1, argumentType, converter);
         } else {
             Object[] obj = new Object[args.narg() - argIndex + 1];
-            for (int start = argIndex; argIndex <= args.narg(); argIndex++) {
-                obj[argIndex - start] = switch (argumentType.getName()) {
-                    case "[Ljava.lang.Number;", "[Ljava.lang.Double;", "[D" -> args.checkdouble(argIndex);
-                    case "[Ljava.lang.String;" -> args.checkjstring(argIndex);
-                    case "[Ljava.lang.Boolean;", "[B" -> args.toboolean(argIndex);
-                    case "[Ljava.lang.Float;", "[F" -> (float) args.checkdouble(argIndex);
-                    case "[Ljava.lang.Integer;", "[I" -> args.checkint(argIndex);
-                    case "[Ljava.lang.Long;", "[J" -> args.checklong(argIndex);
-                    case "[Lorg.luaj.vm2.LuaTable;" -> args.checktable(argIndex);
-                    case "[Lorg.luaj.vm2.LuaFunction;" -> args.checkfunction(argIndex);
-                    case "[Lorg.luaj.vm2.LuaValue;" -> args.arg(argIndex);
-                    case "[Ljava.lang.Object;" -> luaToJava(args.arg(argIndex));
-                    default -> args.checkuserdata(argIndex, argumentType);
-                };
-            }
+            for (int start = argIndex; argIndex <= args.narg(); argIndex++)
+                obj[argIndex - start] = converter.convert(args, argIndex);
             return Arrays.copyOf(obj, obj.length, (Class<? extends Object[]>) argumentType);
         }
     }
 
     //we need to allow string being numbers here
     //however in places like pings and print we should keep strings as strings
-    public Object luaToJava(LuaValue val) {
+    public static Object luaToJava(LuaValue val) {
         if (val.istable())
             return val.checktable();
         else if (val.isnumber())
@@ -298,6 +417,14 @@ public class LuaTypeManager {
             return null;
     }
 
+    public EntityAPI<?> wrapEntity(Entity entity) {
+        return entityWrappers.get(entity);
+    }
+
+    public void tickEntityWrappers() {
+        entityWrappers.tick();
+    }
+
     public Varargs javaToLua(Object val) {
         if (val == null)
             return LuaValue.NIL;
@@ -329,6 +456,8 @@ public class LuaTypeManager {
             return wrapArray(val);
         else if (val instanceof Component c)
             return LuaValue.valueOf(Component.Serializer.toJson(c));
+        else if (val instanceof Entity e)
+            return wrap(entityWrappers.get(e));
         else
             return wrap(val);
     }
@@ -4,37 +4,29 @@ import net.minecraft.nbt.*;
 import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
 
-import java.util.HashMap;
-import java.util.function.Function;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
 
 public class NbtToLua {
 
-    private static final HashMap<Class<?>, Function<Tag, LuaValue>> CONVERTERS = new HashMap<>() {{
-        //primitive types
-        put(ByteTag.class, tag -> LuaValue.valueOf(((ByteTag) tag).getAsByte()));
-        put(ShortTag.class, tag -> LuaValue.valueOf(((ShortTag) tag).getAsShort()));
-        put(IntTag.class, tag -> LuaValue.valueOf(((IntTag) tag).getAsInt()));
-        put(LongTag.class, tag -> LuaValue.valueOf(((LongTag) tag).getAsLong()));
-        put(FloatTag.class, tag -> LuaValue.valueOf(((FloatTag) tag).getAsFloat()));
-        put(DoubleTag.class, tag -> LuaValue.valueOf(((DoubleTag) tag).getAsDouble()));
+    private static final int READ_ONLY_CACHE_SIZE = 256;
+    private static final LuaTable EMPTY = new ReadOnlyLuaTable(new LuaTable());
 
-        //compound special :D
-        put(CompoundTag.class, tag -> {
-            LuaTable table = new LuaTable();
-            CompoundTag compound = (CompoundTag) tag;
-
-            for (String key : compound.getAllKeys())
-                table.set(key, convert(compound.get(key)));
-
-            return table;
-        });
+    //read only tables can be shared, so equal tags reuse the same conversion
+    private static final LinkedHashMap<CompoundTag, LuaTable> READ_ONLY_CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CompoundTag, LuaTable> eldest) {
+            return size() > READ_ONLY_CACHE_SIZE;
+        }
+    };
 
-        //collection types
-        put(ByteArrayTag.class, tag -> fromCollection((CollectionTag<?>) tag));
-        put(IntArrayTag.class, tag -> fromCollection((CollectionTag<?>) tag));
-        put(LongArrayTag.class, tag -> fromCollection((CollectionTag<?>) tag));
-        put(ListTag.class, tag -> fromCollection((CollectionTag<?>) tag));
-    }};
+    private static LuaValue fromCompound(CompoundTag compound) {
+        LuaTable table = new LuaTable();
+        for (String key : compound.getAllKeys())
+            table.set(key, convert(compound.get(key)));
+        return table;
+    }
 
     private static LuaValue fromCollection(CollectionTag<?> tag) {
         LuaTable table = new LuaTable();
@@ -52,11 +44,65 @@ public class NbtToLua {
         if (tag == null)
             return null;
 
-        Class<?> clazz = tag.getClass();
-        Function<Tag, LuaValue> builder = CONVERTERS.get(clazz);
-        if (builder == null)
-            return LuaValue.valueOf(tag.getAsString());
+        return switch (tag.getId()) {
+            //primitive types
+            case Tag.TAG_BYTE -> LuaValue.valueOf(((NumericTag) tag).getAsByte());
+            case Tag.TAG_SHORT -> LuaValue.valueOf(((NumericTag) tag).getAsShort());
+            case Tag.TAG_INT -> LuaValue.valueOf(((NumericTag) tag).getAsInt());
+            case Tag.TAG_LONG -> LuaValue.valueOf(((NumericTag) tag).getAsLong());
+            case Tag.TAG_FLOAT -> LuaValue.valueOf(((NumericTag) tag).getAsFloat());
+            case Tag.TAG_DOUBLE -> LuaValue.valueOf(((NumericTag) tag).getAsDouble());
+
+            //compound special :D
+            case Tag.TAG_COMPOUND -> fromCompound((CompoundTag) tag);
+
+            //collection types
+            case Tag.TAG_BYTE_ARRAY, Tag.TAG_INT_ARRAY, Tag.TAG_LONG_ARRAY, Tag.TAG_LIST -> fromCollection((CollectionTag<?>) tag);
+
+            default -> LuaValue.valueOf(tag.getAsString());
+        };
+    }
 
-        return builder.apply(tag);
+    //read only conversion, shared between every caller converting an equal tag
+    public static LuaTable convertReadOnly(CompoundTag tag) {
+        if (tag == null || tag.isEmpty())
+            return EMPTY;
+
+        synchronized (READ_ONLY_CACHE) {
+            LuaTable table = READ_ONLY_CACHE.get(tag);
+            if (table == null) {
+                table = new ReadOnlyLuaTable(fromCompound(tag));
+                //the given tag may still change, so the key is a copy
+                READ_ONLY_CACHE.put(tag.copy(), table);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Converts tags that are read again and again, like the nbt of an entity.
+     * The tag is only fetched once per tick, and converted again only when it changed.
+     * The tables are read only, so the same one is handed out until then
+     */
+    public static class Cached {
+
+        private int lastTick = Integer.MIN_VALUE;
+        private CompoundTag lastTag;
+        private LuaTable lastTable;
+
+        public synchronized LuaTable convert(int tick, Supplier<CompoundTag> tag) {
+            if (lastTable != null && lastTick == tick)
+                return lastTable;
+            lastTick = tick;
+
+            //the given tag is freshly saved, so it is safe to keep
+            CompoundTag newTag = tag.get();
+            if (lastTable == null || !newTag.equals(lastTag)) {
+                lastTag = newTag;
+                lastTable = newTag.isEmpty() ? EMPTY : new ReadOnlyLuaTable(fromCompound(newTag));
+            }
+
+            return lastTable;
+        }
     }
 }
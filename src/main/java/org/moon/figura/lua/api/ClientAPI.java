@@ -14,6 +14,7 @@ import net.minecraft.core.UUIDUtil;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.packs.repository.Pack;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.phys.Vec3;
 import org.joml.Vector3f;
 import org.luaj.vm2.LuaError;
@@ -420,9 +421,15 @@ public class ClientAPI {
     }
 
     @LuaWhitelist
-    @LuaMethodDoc("client.get_camera_entity")
-    public static EntityAPI<?> getCameraEntity() {
-        return EntityAPI.wrap(Minecraft.getInstance().getCameraEntity());
+    @LuaMethodDoc(
+            overloads = @LuaMethodOverload(
+                    returnType = EntityAPI.class
+            ),
+            value = "client.get_camera_entity"
+    )
+    public static Entity getCameraEntity() {
+        //wrapped by the calling runtime
+        return Minecraft.getInstance().getCameraEntity();
     }
 
     @LuaWhitelist
@@ -610,9 +610,15 @@ public class HostAPI {
     }
 
     @LuaWhitelist
-    @LuaMethodDoc("host.get_pick_entity")
-    public EntityAPI<?> getPickEntity() {
-        return isHost() && minecraft.crosshairPickEntity != null ? EntityAPI.wrap(minecraft.crosshairPickEntity) : null;
+    @LuaMethodDoc(
+            overloads = @LuaMethodOverload(
+                    returnType = EntityAPI.class
+            ),
+            value = "host.get_pick_entity"
+    )
+    public Entity getPickEntity() {
+        //wrapped by the calling runtime
+        return isHost() ? minecraft.crosshairPickEntity : null;
     }
 
     @LuaWhitelist
@@ -20,6 +20,7 @@ import net.minecraft.world.phys.HitResult;
 import net.minecraft.world.phys.Vec3;
 import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
+import org.moon.figura.FiguraMod;
 import org.moon.figura.avatar.Avatar;
 import org.moon.figura.avatar.AvatarManager;
 import org.moon.figura.lua.LuaWhitelist;
@@ -38,7 +39,9 @@ import org.moon.figura.utils.EntityUtils;
 import org.moon.figura.utils.LuaUtils;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @LuaWhitelist
@@ -53,6 +56,9 @@ public class EntityAPI<T extends Entity> {
 
     private boolean thingy = true;
     private String cacheType;
+    private int checkedTick = -1;
+    private NbtToLua.Cached nbtCache;
+    private Cache cache; //the runtime cache this wrapper came from, reused for the entities it returns //created on first use, most wrappers never read their nbt
 
     public EntityAPI(T entity) {
         this.entity = entity;
@@ -69,8 +75,17 @@ public class EntityAPI<T extends Entity> {
         return new EntityAPI<>(e);
     }
 
+    private EntityAPI<?> wrapOther(Entity e) {
+        return cache != null ? cache.get(e) : wrap(e);
+    }
+
     protected final void checkEntity() {
         if (entity.isRemoved() || getLevel() != Minecraft.getInstance().level) {
+            //scripts call getters a lot, so only look for a replaced entity once per tick
+            if (checkedTick == FiguraMod.ticks)
+                return;
+            checkedTick = FiguraMod.ticks;
+
             T newEntityInstance = (T) EntityUtils.getEntityByUUID(entityUUID);
             thingy = newEntityInstance != null;
             if (thingy)
@@ -192,7 +207,7 @@ public class EntityAPI<T extends Entity> {
     @LuaMethodDoc("entity.get_vehicle")
     public EntityAPI<?> getVehicle() {
         checkEntity();
-        return wrap(entity.getVehicle());
+        return wrapOther(entity.getVehicle());
     }
 
     @LuaWhitelist
@@ -343,9 +358,13 @@ public class EntityAPI<T extends Entity> {
     @LuaMethodDoc("entity.get_nbt")
     public LuaTable getNbt() {
         checkEntity();
-        CompoundTag tag = new CompoundTag();
-        entity.saveWithoutId(tag);
-        return (LuaTable) NbtToLua.convert(tag);
+        if (nbtCache == null)
+            nbtCache = new NbtToLua.Cached();
+        return nbtCache.convert(FiguraMod.ticks, () -> {
+            CompoundTag tag = new CompoundTag();
+            entity.saveWithoutId(tag);
+            return tag;
+        });
     }
 
     @LuaWhitelist
@@ -376,7 +395,7 @@ public class EntityAPI<T extends Entity> {
 
         List<EntityAPI<?>> list = new ArrayList<>();
         for (Entity passenger : entity.getPassengers())
-            list.add(wrap(passenger));
+            list.add(wrapOther(passenger));
         return list;
     }
 
@@ -384,14 +403,14 @@ public class EntityAPI<T extends Entity> {
     @LuaMethodDoc("entity.get_controlling_passenger")
     public EntityAPI<?> getControllingPassenger() {
         checkEntity();
-        return wrap(entity.getControllingPassenger());
+        return wrapOther(entity.getControllingPassenger());
     }
 
     @LuaWhitelist
     @LuaMethodDoc("entity.get_controlled_vehicle")
     public EntityAPI<?> getControlledVehicle() {
         checkEntity();
-        return wrap(entity.getControlledVehicle());
+        return wrapOther(entity.getControlledVehicle());
     }
 
     @LuaWhitelist
@@ -459,7 +478,7 @@ public class EntityAPI<T extends Entity> {
         EntityHitResult entityHit = ProjectileUtil.getEntityHitResult(entity, vec3, vec33, aABB, e -> e != entity, distance);
 
         if (entityHit != null)
-            return new Object[]{EntityAPI.wrap(entityHit.getEntity()), FiguraVec3.fromVec3(entityHit.getLocation())};
+            return new Object[]{wrapOther(entityHit.getEntity()), FiguraVec3.fromVec3(entityHit.getLocation())};
 
         return null;
     }
@@ -520,4 +539,34 @@ public class EntityAPI<T extends Entity> {
         checkEntity();
         return (entity.hasCustomName() ? entity.getCustomName().getString() + " (" + getType() + ")" : getType()) + " (Entity)";
     }
+
+    /**
+     * The wrappers given to a single runtime, so its scripts get the same wrapper for the same entity,
+     * looked up before any wrapper is created. Wrappers of entities that are gone are forgotten every tick
+     */
+    public static class Cache {
+
+        private final Map<Entity, EntityAPI<?>> wrappers = new IdentityHashMap<>();
+
+        public synchronized EntityAPI<?> get(Entity entity) {
+            if (entity == null)
+                return null;
+
+            EntityAPI<?> api = wrappers.get(entity);
+            if (api == null) {
+                api = wrap(entity);
+                api.cache = this;
+                wrappers.put(entity, api);
+            }
+            return api;
+        }
+
+        //scripts still holding a forgotten wrapper keep working as before
+        public synchronized void tick() {
+            if (wrappers.isEmpty())
+                return;
+            Level level = Minecraft.getInstance().level;
+            wrappers.keySet().removeIf(e -> e.isRemoved() || ((EntityAccessor) e).getLevel() != level);
+        }
+    }
 }
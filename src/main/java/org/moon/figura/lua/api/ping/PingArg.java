@@ -7,9 +7,8 @@ import org.moon.figura.math.matrix.FiguraMatrix;
 import org.moon.figura.math.vector.FiguraVector;
 import org.moon.figura.utils.MathUtils;
 
-import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class PingArg {
 
@@ -23,6 +22,9 @@ public class PingArg {
             MATRIX_2 = 9, MATRIX_3 = 10, MATRIX_4 = 11,
             INT_1B = 12, INT_2B = 13, INT_3B = 14, INT_4B = 15;
 
+    //reused between pings, grown when a ping does not fit
+    private static final ThreadLocal<Writer> WRITER = ThreadLocal.withInitial(Writer::new);
+
     private final Varargs args;
 
     public PingArg(Varargs args) {
@@ -33,162 +35,183 @@ public class PingArg {
 
     public byte[] toByteArray() {
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            DataOutputStream dos = new DataOutputStream(baos);
+            Writer writer = WRITER.get();
+            writer.buffer.clear();
 
             for (int i = 0; i < args.narg(); i++) {
                 LuaValue arg = args.arg(i + 1);
-                writeArg(arg, dos);
+                writeArg(arg, writer);
             }
 
-            return baos.toByteArray();
+            ByteBuffer buffer = writer.buffer;
+            return Arrays.copyOf(buffer.array(), buffer.position());
         } catch (Exception e) {
             throw new LuaError("Failed to write ping! " + e.getMessage());
         }
     }
 
-    private static void writeArg(LuaValue val, DataOutputStream dos) throws IOException {
+    private static void writeArg(LuaValue val, Writer writer) {
         if (val.isboolean()) {
-            writeBool(val.checkboolean(), dos);
+            writeBool(val.checkboolean(), writer);
         } else if (val instanceof LuaString valStr) {
-            dos.writeByte(STRING);
-            writeString(valStr, dos);
+            writer.ensure(1).put((byte) STRING);
+            writeString(valStr, writer);
         } else if (val.isint()) {
-            writeInt(val.checkint(), dos);
+            writeInt(val.checkint(), writer);
         } else if (val.isnumber()) {
-            dos.writeByte(DOUBLE);
-            dos.writeDouble(val.checkdouble());
+            writer.ensure(9).put((byte) DOUBLE).putDouble(val.checkdouble());
         } else if (val.istable()) {
-            dos.writeByte(TABLE);
-            writeTable(val.checktable(), dos);
+            writer.ensure(1).put((byte) TABLE);
+            writeTable(val.checktable(), writer);
         } else if (val.isuserdata(FiguraVector.class)) {
-            writeVec((FiguraVector<?, ?>) val.checkuserdata(), dos);
+            writeVec((FiguraVector<?, ?>) val.checkuserdata(), writer);
         } else if (val.isuserdata(FiguraMatrix.class)) {
-            writeMat((FiguraMatrix<?, ?>) val.checkuserdata(), dos);
+            writeMat((FiguraMatrix<?, ?>) val.checkuserdata(), writer);
         } else {
-            dos.writeByte(NIL);
-            //dos.writeNull();
+            writer.ensure(1).put((byte) NIL);
         }
     }
 
-    private static void writeBool(boolean value, DataOutputStream dos) throws IOException {
-        dos.writeByte(value ? BOOL_TRUE : BOOL_FALSE);
+    private static void writeBool(boolean value, Writer writer) {
+        writer.ensure(1).put((byte) (value ? BOOL_TRUE : BOOL_FALSE));
     }
 
-    private static void writeInt(int value, DataOutputStream dos) throws IOException {
+    private static void writeInt(int value, Writer writer) {
         if (Byte.MIN_VALUE <= value && value <= Byte.MAX_VALUE) {
-            dos.writeByte(INT_1B);
-            dos.writeByte((byte) value);
+            writer.ensure(2).put((byte) INT_1B).put((byte) value);
         } else if (Short.MIN_VALUE <= value && value <= Short.MAX_VALUE) {
-            dos.writeByte(INT_2B);
-            dos.writeShort((short) value);
+            writer.ensure(3).put((byte) INT_2B).putShort((short) value);
         } else if (-0x800000 <= value && value < 0x800000) {
-            dos.writeByte(INT_3B);
-            dos.writeShort((short) (value >> 8));
-            dos.writeByte((byte) (value & 0xFF));
+            writer.ensure(4).put((byte) INT_3B).putShort((short) (value >> 8)).put((byte) (value & 0xFF));
         } else {
-            dos.writeByte(INT_4B);
-            dos.writeInt(value);
+            writer.ensure(5).put((byte) INT_4B).putInt(value);
         }
     }
 
-    private static void writeString(LuaString string, DataOutputStream dos) throws IOException {
+    private static void writeString(LuaString string, Writer writer) {
         int strLen = Math.min(string.length(), Short.MAX_VALUE * 2 + 1);
-        dos.writeShort((short) strLen);
-        string.write(dos, 0, strLen);
+        writer.ensure(2 + strLen).putShort((short) strLen).put(string.m_bytes, string.m_offset, strLen);
     }
 
-    private static void writeTable(LuaTable table, DataOutputStream dos) throws IOException {
-        writeInt(table.keyCount(), dos);
+    private static void writeTable(LuaTable table, Writer writer) {
+        writeInt(table.keyCount(), writer);
 
         for (LuaValue key : table.keys()) {
-            writeArg(key, dos);
-            writeArg(table.get(key), dos);
+            writeArg(key, writer);
+            writeArg(table.get(key), writer);
         }
     }
 
-    private static void writeVec(FiguraVector<?, ?> vector, DataOutputStream dos) throws IOException {
-        dos.writeByte(switch (vector.size()) {
+    private static void writeVec(FiguraVector<?, ?> vector, Writer writer) {
+        int type = switch (vector.size()) {
             case 2 -> VECTOR_2;
             case 3 -> VECTOR_3;
             case 4 -> VECTOR_4;
             default -> throw new UnsupportedOperationException("Cannot write ping for vector size of " + vector.size());
-        });
+        };
 
+        ByteBuffer buffer = writer.ensure(1 + vector.size() * 8).put((byte) type);
         for (int i = 0; i < vector.size(); i++)
-            dos.writeDouble(vector.index(i));
+            buffer.putDouble(vector.index(i));
     }
 
-    private static void writeMat(FiguraMatrix<?, ?> matrix, DataOutputStream dos) throws IOException {
-        dos.writeByte(switch (matrix.cols()) {
+    private static void writeMat(FiguraMatrix<?, ?> matrix, Writer writer) {
+        int type = switch (matrix.cols()) {
             case 2 -> MATRIX_2;
             case 3 -> MATRIX_3;
             case 4 -> MATRIX_4;
             default -> throw new UnsupportedOperationException("Cannot write ping for matrix column of size " + matrix.cols());
-        });
+        };
 
+        ByteBuffer buffer = writer.ensure(1 + matrix.cols() * matrix.cols() * 8).put((byte) type);
         for (int i = 0; i < matrix.cols(); i++) {
             FiguraVector<?, ?> vec = matrix.getColumn(i + 1);
             for (int o = 0; o < matrix.cols(); o++) {
-                dos.writeDouble(vec.index(o));
+                buffer.putDouble(vec.index(o));
+            }
+        }
+    }
+
+    private static class Writer {
+        private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        private ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                grown.put(buffer.array(), 0, buffer.position());
+                buffer = grown;
             }
+            return buffer;
         }
     }
 
     // -- reading -- //
 
     public static LuaValue[] fromByteArray(byte[] bytes, Avatar owner) {
-        try {
-            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+        return fromByteBuffer(ByteBuffer.wrap(bytes), owner);
+    }
 
-            List<LuaValue> luaValues = new ArrayList<>();
-            while (dis.available() > 0)
-                luaValues.add(readArg(dis, owner));
+    //reads the arguments straight from the buffer, leaving it at the end of the ping
+    public static LuaValue[] fromByteBuffer(ByteBuffer buffer, Avatar owner) {
+        try {
+            LuaValue[] luaValues = new LuaValue[4];
+            int count = 0;
+            while (buffer.hasRemaining()) {
+                if (count == luaValues.length)
+                    luaValues = Arrays.copyOf(luaValues, count * 2);
+                luaValues[count++] = readArg(buffer, owner);
+            }
 
-            return luaValues.toArray(new LuaValue[0]);
+            return count == luaValues.length ? luaValues : Arrays.copyOf(luaValues, count);
         } catch (Exception e) {
             FiguraMod.LOGGER.warn("Failed to read " + owner.owner + " ping!", e);
             return null;
         }
     }
 
-    private static LuaValue readArg(DataInputStream dis, Avatar owner) throws IOException {
-        byte type = dis.readByte();
+    private static LuaValue readArg(ByteBuffer buffer, Avatar owner) {
+        byte type = buffer.get();
 
         return switch (type) {
             case BOOL_TRUE -> LuaValue.valueOf(true);
             case BOOL_FALSE -> LuaValue.valueOf(false);
-            case INT_1B, INT_2B, INT_3B, INT_4B -> LuaValue.valueOf(readInt(dis, type));
-            case DOUBLE -> LuaValue.valueOf(dis.readDouble());
-            case STRING -> LuaValue.valueOf(dis.readNBytes(dis.readUnsignedShort()));
-            case TABLE -> readTable(dis, owner);
-            case VECTOR_2, VECTOR_3, VECTOR_4 -> owner.luaRuntime.typeManager.javaToLua(readVec(dis, type)).arg1();
-            case MATRIX_2, MATRIX_3, MATRIX_4 -> owner.luaRuntime.typeManager.javaToLua(readMat(dis, type)).arg1();
+            case INT_1B, INT_2B, INT_3B, INT_4B -> LuaValue.valueOf(readInt(buffer, type));
+            case DOUBLE -> LuaValue.valueOf(buffer.getDouble());
+            case STRING -> LuaValue.valueOf(readString(buffer));
+            case TABLE -> readTable(buffer, owner);
+            case VECTOR_2, VECTOR_3, VECTOR_4 -> owner.luaRuntime.typeManager.javaToLua(readVec(buffer, type)).arg1();
+            case MATRIX_2, MATRIX_3, MATRIX_4 -> owner.luaRuntime.typeManager.javaToLua(readMat(buffer, type)).arg1();
             default -> LuaValue.NIL;
         };
     }
 
-    private static int readInt(DataInputStream dis, byte type) throws IOException {
+    private static int readInt(ByteBuffer buffer, byte type) {
         return switch (type) {
-            case INT_1B -> dis.readByte();
-            case INT_2B -> dis.readShort();
-            case INT_3B -> (int) dis.readShort() << 8 | dis.readByte() & 0xFF;
-            case INT_4B -> dis.readInt();
+            case INT_1B -> buffer.get();
+            case INT_2B -> buffer.getShort();
+            case INT_3B -> (int) buffer.getShort() << 8 | buffer.get() & 0xFF;
+            case INT_4B -> buffer.getInt();
             default -> 0;
         };
     }
 
-    private static LuaValue readTable(DataInputStream dis, Avatar owner) throws IOException {
-        int size = readInt(dis, dis.readByte());
+    private static byte[] readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static LuaValue readTable(ByteBuffer buffer, Avatar owner) {
+        int size = readInt(buffer, buffer.get());
         LuaTable table = new LuaTable();
 
         for (int i = 0; i < size; i++)
-            table.set(readArg(dis, owner), readArg(dis, owner));
+            table.set(readArg(buffer, owner), readArg(buffer, owner));
 
         return table;
     }
 
-    private static FiguraVector<?, ?> readVec(DataInputStream dis, byte type) throws IOException {
+    private static FiguraVector<?, ?> readVec(ByteBuffer buffer, byte type) {
         byte size = switch (type) {
             case VECTOR_2 -> 2;
             case VECTOR_3 -> 3;
@@ -198,12 +221,12 @@ public class PingArg {
 
         double[] array = new double[size];
         for (int i = 0; i < size; i++)
-            array[i] = dis.readDouble();
+            array[i] = buffer.getDouble();
 
         return MathUtils.sizedVector(array);
     }
 
-    private static FiguraMatrix<?, ?> readMat(DataInputStream dis, byte type) throws IOException {
+    private static FiguraMatrix<?, ?> readMat(ByteBuffer buffer, byte type) {
         byte size = switch (type) {
             case MATRIX_2 -> 2;
             case MATRIX_3 -> 3;
@@ -215,7 +238,7 @@ public class PingArg {
         for (int i = 0; i < size; i++) {
             double[] array = new double[size];
             for (int o = 0; o < size; o++)
-                array[o] = dis.readDouble();
+                array[o] = buffer.getDouble();
             vectors[i] = MathUtils.sizedVector(array);
         }
 
@@ -12,7 +12,6 @@ import net.minecraft.core.Registry;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.core.registries.Registries;
 import net.minecraft.nbt.CompoundTag;
-import net.minecraft.nbt.NbtUtils;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.tags.TagKey;
@@ -22,6 +21,7 @@ import net.minecraft.world.level.block.RenderShape;
 import net.minecraft.world.level.block.SoundType;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.properties.Property;
 import net.minecraft.world.level.material.Fluid;
 import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.shapes.VoxelShape;
@@ -39,6 +39,7 @@ import org.moon.figura.utils.ColorUtils;
 import org.moon.figura.utils.LuaUtils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @LuaWhitelist
 @LuaTypeDoc(
@@ -57,13 +58,16 @@ public class BlockStateAPI {
     @LuaFieldDoc("blockstate.properties")
     public final LuaTable properties;
 
+    //the id and properties never change for a state, so they are built once and shared by every instance of it
+    private static final Map<BlockState, StateData> STATES = new ConcurrentHashMap<>();
+
     public BlockStateAPI(BlockState blockstate, BlockPos pos) {
         this.blockState = blockstate;
         this.pos = pos;
-        this.id = BuiltInRegistries.BLOCK.getKey(blockstate.getBlock()).toString();
 
-        CompoundTag tag = NbtUtils.writeBlockState(blockstate);
-        this.properties = new ReadOnlyLuaTable(tag.contains("Properties") ? NbtToLua.convert(tag.get("Properties")) : new LuaTable());
+        StateData data = STATES.computeIfAbsent(blockstate, StateData::of);
+        this.id = data.id;
+        this.properties = data.properties;
     }
 
     protected BlockPos getBlockPos() {
@@ -365,4 +369,19 @@ public class BlockStateAPI {
     public String toString() {
         return id + " (BlockState)";
     }
+
+    private record StateData(String id, LuaTable properties) {
+        private static StateData of(BlockState state) {
+            LuaTable properties = new LuaTable();
+            for (Map.Entry<Property<?>, Comparable<?>> entry : state.getValues().entrySet())
+                properties.set(entry.getKey().getName(), getValueName(entry.getKey(), entry.getValue()));
+
+            return new StateData(BuiltInRegistries.BLOCK.getKey(state.getBlock()).toString(), new ReadOnlyLuaTable(properties));
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T extends Comparable<T>> String getValueName(Property<T> property, Comparable<?> value) {
+            return property.getName((T) value);
+        }
+    }
 }
@@ -20,6 +20,8 @@ import net.minecraft.world.level.Level;
 import net.minecraft.world.level.LightLayer;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
 import net.minecraft.world.level.levelgen.GeodeLayerSettings;
 import net.minecraft.world.level.levelgen.synth.PerlinSimplexNoise;
 import net.minecraft.world.level.levelgen.synth.SimplexNoise;
@@ -29,13 +31,13 @@ import net.minecraft.world.phys.EntityHitResult;
 import net.minecraft.world.phys.HitResult;
 import org.luaj.vm2.LuaError;
 import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
 import org.moon.figura.avatar.Avatar;
 import org.moon.figura.avatar.AvatarManager;
 import org.moon.figura.lua.LuaNotNil;
 import org.moon.figura.lua.LuaWhitelist;
 import org.moon.figura.lua.ReadOnlyLuaTable;
 import org.moon.figura.lua.api.entity.EntityAPI;
-import org.moon.figura.lua.api.entity.PlayerAPI;
 import org.moon.figura.lua.docs.LuaMethodDoc;
 import org.moon.figura.lua.docs.LuaMethodOverload;
 import org.moon.figura.lua.docs.LuaTypeDoc;
@@ -54,7 +56,14 @@ import java.util.*;
 )
 public class WorldAPI {
 
-    public static final WorldAPI INSTANCE = new WorldAPI();
+    private static final int REGION_SIZE = 64; //per axis
+    private static final int REGION_COST = 8; //blocks per instruction
+
+    private final Avatar owner;
+
+    public WorldAPI(Avatar owner) {
+        this.owner = owner;
+    }
 
     public static Level getCurrentWorld() {
         return Minecraft.getInstance().level;
@@ -142,10 +151,126 @@ public class WorldAPI {
         if (!world.hasChunksAt(min, max))
             return list;
 
-        BlockPos.betweenClosedStream(min, max).forEach(blockPos -> list.add(new BlockStateAPI(world.getBlockState(blockPos), blockPos)));
+        //the iterated position is mutable, so every block keeps its own copy
+        for (BlockPos blockPos : BlockPos.betweenClosed(min, max))
+            list.add(new BlockStateAPI(world.getBlockState(blockPos), blockPos.immutable()));
         return list;
     }
 
+    @LuaWhitelist
+    @LuaMethodDoc(
+            overloads = {
+                    @LuaMethodOverload(
+                            argumentTypes = {FiguraVec3.class, FiguraVec3.class},
+                            argumentNames = {"min", "max"}
+                    ),
+                    @LuaMethodOverload(
+                            argumentTypes = {Double.class, Double.class, Double.class, FiguraVec3.class},
+                            argumentNames = {"minX", "minY", "minZ", "max"}
+                    ),
+                    @LuaMethodOverload(
+                            argumentTypes = {FiguraVec3.class, Double.class, Double.class, Double.class},
+                            argumentNames = {"min", "maxX", "maxY", "maxZ"}
+                    ),
+                    @LuaMethodOverload(
+                            argumentTypes = {Double.class, Double.class, Double.class, Double.class, Double.class, Double.class},
+                            argumentNames = {"minX", "minY", "minZ", "maxX", "maxY", "maxZ"}
+                    )
+            },
+            value = "world.get_block_region"
+    )
+    public Map<String, Object> getBlockRegion(Object x, Object y, Double z, Double w, Double t, Double h) {
+        Pair<FiguraVec3, FiguraVec3> pair = LuaUtils.parse2Vec3("getBlockRegion", x, y, z, w, t, h);
+        FiguraVec3 a = pair.getFirst(), b = pair.getSecond();
+        Level world = getCurrentWorld();
+
+        int[] axisX = getRegionAxis(a.x, b.x, -Level.MAX_LEVEL_SIZE, Level.MAX_LEVEL_SIZE - 1);
+        int[] axisY = getRegionAxis(a.y, b.y, world.getMinBuildHeight(), world.getMaxBuildHeight() - 1);
+        int[] axisZ = getRegionAxis(a.z, b.z, -Level.MAX_LEVEL_SIZE, Level.MAX_LEVEL_SIZE - 1);
+
+        int minX = axisX[0], minY = axisY[0], minZ = axisZ[0];
+        int sizeX = axisX[1], sizeY = axisY[1], sizeZ = axisZ[1];
+        int maxX = minX + sizeX - 1, maxY = minY + sizeY - 1, maxZ = minZ + sizeZ - 1;
+
+        int volume = sizeX * sizeY * sizeZ;
+        owner.punish(volume / REGION_COST);
+
+        //blocks are indices into the palette, ordered by x, then z, then y
+        Map<BlockState, Integer> ids = new IdentityHashMap<>();
+        List<BlockStateAPI> palette = new ArrayList<>();
+        LuaTable blocks = new LuaTable(volume, 0);
+
+        BlockState air = Blocks.AIR.defaultBlockState();
+        BlockState lastState = null;
+        LuaValue lastId = null;
+
+        //read straight from the chunk sections, one chunk column at a time
+        for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+            for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                LevelChunk chunk = world.getChunkSource().getChunk(cx, cz, false);
+                int x0 = Math.max(minX, cx << 4), x1 = Math.min(maxX, (cx << 4) + 15);
+                int z0 = Math.max(minZ, cz << 4), z1 = Math.min(maxZ, (cz << 4) + 15);
+
+                for (int by = minY; by <= maxY; by++) {
+                    LevelChunkSection section = chunk == null ? null : chunk.getSection(chunk.getSectionIndex(by));
+                    boolean empty = section == null || section.hasOnlyAir();
+
+                    for (int bz = z0; bz <= z1; bz++) {
+                        int row = getRegionIndex(0, by - minY, bz - minZ, sizeX, sizeZ) - minX;
+                        for (int bx = x0; bx <= x1; bx++) {
+                            BlockState state = empty ? air : section.getBlockState(bx & 15, by & 15, bz & 15);
+
+                            //neighbouring blocks are usually the same, so skip the palette lookup for them
+                            if (state != lastState) {
+                                Integer id = ids.get(state);
+                                if (id == null) {
+                                    //palette entries keep the first position they were found at, so their getters read a real block
+                                    palette.add(new BlockStateAPI(state, new BlockPos(bx, by, bz)));
+                                    id = palette.size();
+                                    ids.put(state, id);
+                                }
+                                lastState = state;
+                                lastId = LuaValue.valueOf(id);
+                            }
+
+                            blocks.rawset(row + bx, lastId);
+                        }
+                    }
+                }
+            }
+        }
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("pos", FiguraVec3.of(minX, minY, minZ));
+        map.put("size", FiguraVec3.of(sizeX, sizeY, sizeZ));
+        map.put("palette", palette);
+        map.put("blocks", blocks);
+        return map;
+    }
+
+    //the first block and the amount of blocks of a region along one axis, cut down to the given bounds
+    static int[] getRegionAxis(double a, double b, int lower, int upper) {
+        if (Double.isNaN(a) || Double.isNaN(b))
+            throw new LuaError("Invalid region position");
+
+        //sized before it is cut down to the world, so a region too big is never silently clamped
+        double min = Math.floor(Math.min(a, b)), max = Math.floor(Math.max(a, b));
+        if (max - min + 1 > REGION_SIZE)
+            throw new LuaError("Region too big, the maximum size is " + REGION_SIZE + " blocks per axis");
+
+        long from = Math.max((long) min, lower);
+        long to = Math.min((long) max, upper);
+        if (to < from)
+            throw new LuaError("Region is outside of the world");
+
+        return new int[]{(int) from, (int) (to - from + 1)};
+    }
+
+    //index of a block in the blocks table of a region, from its position relative to the region
+    static int getRegionIndex(int x, int y, int z, int sizeX, int sizeZ) {
+        return (y * sizeZ + z) * sizeX + x + 1;
+    }
+
     @LuaWhitelist
     @LuaMethodDoc(
             overloads = {
@@ -353,10 +478,11 @@ public class WorldAPI {
 
     @LuaWhitelist
     @LuaMethodDoc("world.get_players")
-    public static Map<String, EntityAPI<?>> getPlayers() {
-        HashMap<String, EntityAPI<?>> playerList = new HashMap<>();
+    public static Map<String, Entity> getPlayers() {
+        //entities are wrapped by the calling runtime, which reuses the wrappers it already gave out
+        HashMap<String, Entity> playerList = new HashMap<>();
         for (Player player : getCurrentWorld().players())
-            playerList.put(player.getName().getString(), PlayerAPI.wrap(player));
+            playerList.put(player.getName().getString(), player);
         return playerList;
     }
 
@@ -374,13 +500,13 @@ public class WorldAPI {
             },
             value = "world.get_nearby_entities"
     )
-    public static Map<String, EntityAPI<?>> getNearbyEntities(Integer range, Object x, Double y, Double z) {
+    public static Map<String, Entity> getNearbyEntities(Integer range, Object x, Double y, Double z) {
         FiguraVec3 pos = LuaUtils.parseVec3("getNearbyEntities", x, y, z);
-        HashMap<String, EntityAPI<?>> entityList = new HashMap<>();
+        HashMap<String, Entity> entityList = new HashMap<>();
 
         AABB area = new AABB(pos.asVec3().subtract(range, range, range), pos.asVec3().add(range, range, range));
         for (Entity entity : getCurrentWorld().getEntitiesOfClass(Entity.class, area)) {
-            entityList.put(entity.getName().getString(), EntityAPI.wrap(entity));
+            entityList.put(entity.getName().getString(), entity);
             System.out.println(entity.getName().getString());
         }
         return entityList;
@@ -390,13 +516,14 @@ public class WorldAPI {
     @LuaMethodDoc(
             overloads = @LuaMethodOverload(
                     argumentTypes = String.class,
-                    argumentNames = "UUID"
+                    argumentNames = "UUID",
+                    returnType = EntityAPI.class
             ),
             value = "world.get_entity"
     )
-    public static EntityAPI<?> getEntity(@LuaNotNil String uuid) {
+    public static Entity getEntity(@LuaNotNil String uuid) {
         try {
-            return EntityAPI.wrap(EntityUtils.getEntityByUUID(UUID.fromString(uuid)));
+            return EntityUtils.getEntityByUUID(UUID.fromString(uuid));
         } catch (Exception ignored) {
             throw new LuaError("Invalid UUID");
         }
@@ -479,7 +606,7 @@ public class WorldAPI {
             return null;
 
         HashMap<String, Object> map = new HashMap<>();
-        map.put("entity", EntityAPI.wrap(result.getEntity()));
+        map.put("entity", result.getEntity());
         map.put("pos", FiguraVec3.fromVec3(result.getLocation()));
 
         return map;
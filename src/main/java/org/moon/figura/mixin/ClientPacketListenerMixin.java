@@ -1,12 +1,18 @@
 package org.moon.figura.mixin;
 
 import net.minecraft.client.multiplayer.ClientPacketListener;
+import net.minecraft.network.protocol.game.ClientboundPlayerInfoRemovePacket;
+import net.minecraft.network.protocol.game.ClientboundPlayerInfoUpdatePacket;
 import org.moon.figura.FiguraMod;
+import org.moon.figura.backend2.NetworkStuff;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
+import java.util.UUID;
+
 @Mixin(value = ClientPacketListener.class, priority = 999)
 public class ClientPacketListenerMixin {
 
@@ -15,4 +21,17 @@ public class ClientPacketListenerMixin {
         if (command.startsWith(FiguraMod.MOD_ID))
             cir.setReturnValue(false);
     }
+
+    //only returns normally once it is running on the main thread
+    @Inject(at = @At("RETURN"), method = "handlePlayerInfoUpdate")
+    private void handlePlayerInfoUpdate(ClientboundPlayerInfoUpdatePacket packet, CallbackInfo ci) {
+        for (ClientboundPlayerInfoUpdatePacket.Entry entry : packet.newEntries())
+            NetworkStuff.playerJoined(entry.profileId());
+    }
+
+    @Inject(at = @At("RETURN"), method = "handlePlayerInfoRemove")
+    private void handlePlayerInfoRemove(ClientboundPlayerInfoRemovePacket packet, CallbackInfo ci) {
+        for (UUID id : packet.profileIds())
+            NetworkStuff.playerLeft(id);
+    }
 }
@@ -10,7 +10,6 @@ import net.minecraft.world.entity.projectile.AbstractArrow;
 import org.moon.figura.FiguraMod;
 import org.moon.figura.avatar.Avatar;
 import org.moon.figura.avatar.AvatarManager;
-import org.moon.figura.lua.api.entity.EntityAPI;
 import org.moon.figura.permissions.Permissions;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
@@ -39,7 +38,7 @@ public abstract class ArrowRendererMixin<T extends AbstractArrow> extends Entity
         FiguraMod.pushProfiler("arrowRender");
 
         FiguraMod.pushProfiler("event");
-        boolean bool = avatar.arrowRenderEvent(tickDelta, EntityAPI.wrap(abstractArrow));
+        boolean bool = avatar.arrowRenderEvent(tickDelta, abstractArrow);
 
         FiguraMod.popPushProfiler("render");
         if (bool || avatar.renderArrow(poseStack, multiBufferSource, tickDelta, light)) {
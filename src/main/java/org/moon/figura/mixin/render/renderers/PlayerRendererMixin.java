@@ -18,13 +18,12 @@ import org.joml.Matrix4f;
 import org.moon.figura.FiguraMod;
 import org.moon.figura.avatar.Avatar;
 import org.moon.figura.avatar.AvatarManager;
-import org.moon.figura.avatar.Badges;
+import org.moon.figura.avatar.NameplateCache;
 import org.moon.figura.config.Configs;
 import org.moon.figura.lua.api.nameplate.EntityNameplateCustomization;
 import org.moon.figura.lua.api.vanilla_model.VanillaPart;
 import org.moon.figura.math.vector.FiguraVec3;
 import org.moon.figura.permissions.Permissions;
-import org.moon.figura.utils.TextUtils;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
@@ -32,7 +31,6 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import java.util.List;
-import java.util.regex.Pattern;
 
 @Mixin(PlayerRenderer.class)
 public abstract class PlayerRendererMixin extends LivingEntityRenderer<AbstractClientPlayer, PlayerModel<AbstractClientPlayer>> {
@@ -100,24 +98,13 @@ public abstract class PlayerRendererMixin extends LivingEntityRenderer<AbstractC
         stack.scale((float) scaleVec.x, (float) scaleVec.y, (float) scaleVec.z);
 
         //text
-        Component name = Component.literal(player.getName().getString());
         FiguraMod.popPushProfiler("text");
-        Component replacement = hasCustom && custom.getJson() != null ? custom.getJson().copy() : name;
-
-        //name
-        replacement = TextUtils.replaceInText(replacement, "\\$\\{name\\}", name);
-
-        //badges
-        FiguraMod.popPushProfiler("badges");
-        replacement = Badges.appendBadges(replacement, player.getUUID(), config > 1);
-
-        FiguraMod.popPushProfiler("applyName");
-        text = TextUtils.replaceInText(text, "\\b" + Pattern.quote(player.getName().getString()) + "\\b", replacement);
+        NameplateCache.Entry nameplate = NameplateCache.getEntityNameplate(player.getUUID(), text, player.getName().getString(), hasCustom ? custom.getJson() : null, config);
 
         // * variables * //
         FiguraMod.popPushProfiler("colors");
         boolean notSneaking = !player.isDiscrete();
-        boolean deadmau = text.getString().equals("deadmau5");
+        boolean deadmau = nameplate.deadmau();
 
         int bgColor = hasCustom && custom.background != null ? custom.background : (int) (Minecraft.getInstance().options.getBackgroundOpacity(0.25f) * 0xFF) << 24;
         int outlineColor = hasCustom && custom.outlineColor != null ? custom.outlineColor : 0x202020;
@@ -167,7 +154,7 @@ public abstract class PlayerRendererMixin extends LivingEntityRenderer<AbstractC
 
         //render name
         FiguraMod.popPushProfiler("name");
-        List<Component> textList = TextUtils.splitText(text, "\n");
+        List<Component> textList = nameplate.lines();
 
         for (int i = 0; i < textList.size(); i++) {
             Component text1 = textList.get(i);
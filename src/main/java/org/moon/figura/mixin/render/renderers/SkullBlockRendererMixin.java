@@ -17,7 +17,6 @@ import org.moon.figura.FiguraMod;
 import org.moon.figura.avatar.Avatar;
 import org.moon.figura.avatar.AvatarManager;
 import org.moon.figura.ducks.SkullBlockRendererAccessor;
-import org.moon.figura.lua.api.entity.EntityAPI;
 import org.moon.figura.lua.api.world.BlockStateAPI;
 import org.moon.figura.lua.api.world.ItemStackAPI;
 import org.moon.figura.permissions.Permissions;
@@ -65,13 +64,12 @@ public abstract class SkullBlockRendererMixin implements BlockEntityRenderer<Sku
         //event
         BlockStateAPI b = localBlock == null ? null : new BlockStateAPI(localBlock.getBlockState(), localBlock.getBlockPos());
         ItemStackAPI i = localItem != null ? ItemStackAPI.verify(localItem) : null;
-        EntityAPI<?> e = localEntity != null ? EntityAPI.wrap(localEntity) : null;
         String m = localMode.name();
 
         FiguraMod.pushProfiler(localBlock != null ? localBlock.getBlockPos().toString() : String.valueOf(i));
 
         FiguraMod.pushProfiler("event");
-        boolean bool = localAvatar.skullRenderEvent(Minecraft.getInstance().getFrameTime(), b, i, e, m);
+        boolean bool = localAvatar.skullRenderEvent(Minecraft.getInstance().getFrameTime(), b, i, localEntity, m);
 
         //render skull :3
         FiguraMod.popPushProfiler("render");
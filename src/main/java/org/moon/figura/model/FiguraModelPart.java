@@ -19,6 +19,7 @@ import org.moon.figura.math.vector.FiguraVec2;
 import org.moon.figura.math.vector.FiguraVec3;
 import org.moon.figura.model.rendering.ImmediateAvatarRenderer;
 import org.moon.figura.model.rendering.Vertex;
+import org.moon.figura.model.rendering.VertexArray;
 import org.moon.figura.model.rendering.texture.FiguraTexture;
 import org.moon.figura.model.rendering.texture.FiguraTextureSet;
 import org.moon.figura.model.rendering.texture.RenderTypes;
@@ -45,7 +46,8 @@ public class FiguraModelPart implements Comparable<FiguraModelPart> {
     public FiguraModelPart parent;
 
     public final PartCustomization customization;
-    public PartCustomization savedCustomization;
+    public PartCustomization savedCustomization; //reused between frames, only valid while hasSavedCustomization
+    public boolean hasSavedCustomization;
     public ParentType parentType = ParentType.None;
 
     private final Map<String, FiguraModelPart> childCache = new HashMap<>();
@@ -56,6 +58,10 @@ public class FiguraModelPart implements Comparable<FiguraModelPart> {
     public Map<String, RenderTask> renderTasks = new ConcurrentHashMap<>();
 
     public List<FiguraTextureSet> textures;
+
+    //render types resolved for each texture, primary and secondary
+    private ImmediateAvatarRenderer.RenderState[] renderStates = new ImmediateAvatarRenderer.RenderState[0];
+
     public int textureWidth = -1, textureHeight = -1; //If the part has multiple textures, then these are -1.
 
     public boolean animated = false;
@@ -64,7 +70,7 @@ public class FiguraModelPart implements Comparable<FiguraModelPart> {
 
     public final FiguraMat4 savedPartToWorldMat = FiguraMat4.of().scale(1 / 16d, 1 / 16d, 1 / 16d);
 
-    public final Map<Integer, List<Vertex>> vertices;
+    public final Map<Integer, VertexArray> vertices;
 
     @LuaWhitelist
     @LuaFieldDoc("model_part.pre_render")
@@ -76,7 +82,7 @@ public class FiguraModelPart implements Comparable<FiguraModelPart> {
     @LuaFieldDoc("model_part.post_render")
     public LuaFunction postRender; //after children
 
-    public FiguraModelPart(Avatar owner, String name, PartCustomization customization, Map<Integer, List<Vertex>> vertices, List<FiguraModelPart> children) {
+    public FiguraModelPart(Avatar owner, String name, PartCustomization customization, Map<Integer, VertexArray> vertices, List<FiguraModelPart> children) {
         this.owner = owner;
         this.name = name;
         this.customization = customization;
@@ -85,23 +91,25 @@ public class FiguraModelPart implements Comparable<FiguraModelPart> {
     }
 
     public boolean pushVerticesImmediate(ImmediateAvatarRenderer avatarRenderer, int[] remainingComplexity) {
+        if (renderStates.length != facesByTexture.size() * 2) {
+            renderStates = new ImmediateAvatarRenderer.RenderState[facesByTexture.size() * 2];
+            for (int i = 0; i < renderStates.length; i++)
+                renderStates[i] = new ImmediateAvatarRenderer.RenderState();
+        }
+
         for (int i = 0; i < facesByTexture.size(); i++) {
             if (remainingComplexity[0] <= 0)
                 return false;
             remainingComplexity[0] -= facesByTexture.get(i);
-            avatarRenderer.pushFaces(facesByTexture.get(i) + Math.min(remainingComplexity[0], 0), remainingComplexity, textures.get(i), vertices.get(i));
+            avatarRenderer.pushFaces(facesByTexture.get(i) + Math.min(remainingComplexity[0], 0), remainingComplexity, textures.get(i), vertices.get(i), renderStates[i * 2], renderStates[i * 2 + 1]);
         }
         return true;
     }
 
-    private Map<Integer, List<Vertex>> copyVertices() {
-        Map<Integer, List<Vertex>> map = new HashMap<>();
-        for (Map.Entry<Integer, List<Vertex>> entry : vertices.entrySet()) {
-            List<Vertex> list = new ArrayList<>();
-            for (Vertex vertex : entry.getValue())
-                list.add(vertex.copy());
-            map.put(entry.getKey(), list);
-        }
+    private Map<Integer, VertexArray> copyVertices() {
+        Map<Integer, VertexArray> map = new HashMap<>();
+        for (Map.Entry<Integer, VertexArray> entry : vertices.entrySet())
+            map.put(entry.getKey(), entry.getValue().copy());
         return map;
     }
 
@@ -1285,7 +1293,8 @@ public class FiguraModelPart implements Comparable<FiguraModelPart> {
                 break;
             }
         }
-        return vertices.get(index);
+        VertexArray array = vertices.get(index);
+        return array == null ? null : array.getVertices();
     }
 
     @LuaWhitelist
@@ -1293,8 +1302,8 @@ public class FiguraModelPart implements Comparable<FiguraModelPart> {
     public Map<String, List<Vertex>> getAllVertices() {
         Map<String, List<Vertex>> map = new HashMap<>();
         for (int i = 0; i < textures.size(); i++) {
-            List<Vertex> list = vertices.get(i);
-            if (list != null) map.put(textures.get(i).name, list);
+            VertexArray array = vertices.get(i);
+            if (array != null) map.put(textures.get(i).name, array.getVertices());
         }
         return map;
     }
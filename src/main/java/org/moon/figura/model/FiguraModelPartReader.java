@@ -17,12 +17,13 @@ import org.moon.figura.config.Configs;
 import org.moon.figura.math.vector.FiguraVec2;
 import org.moon.figura.math.vector.FiguraVec3;
 import org.moon.figura.math.vector.FiguraVec4;
-import org.moon.figura.model.rendering.Vertex;
+import org.moon.figura.model.rendering.VertexArray;
 import org.moon.figura.model.rendering.texture.FiguraTextureSet;
 import org.moon.figura.model.rendering.texture.RenderTypes;
 import org.moon.figura.utils.MathUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -69,7 +70,7 @@ public class FiguraModelPartReader {
             facesByTexture.add(0);
 
         //Read vertex data
-        Map<Integer, List<Vertex>> vertices = new HashMap<>();
+        Map<Integer, VertexArray> vertices = new HashMap<>();
         if (hasCubeData(partCompound)) {
             readCuboid(facesByTexture, partCompound, vertices);
             customization.partType = PartCustomization.PartType.CUBE;
@@ -85,6 +86,9 @@ public class FiguraModelPartReader {
         if (Configs.FORCE_SMOOTH_AVATAR.value || (smoothNormals && !vertices.isEmpty()))
             smoothfy(vertices);
 
+        for (VertexArray array : vertices.values())
+            array.trim();
+
         //Read children
         ArrayList<FiguraModelPart> children = new ArrayList<>(0);
         if (partCompound.contains("chld")) {
@@ -347,7 +351,7 @@ public class FiguraModelPartReader {
     };
 
 
-    private static void readCuboid(List<Integer> facesByTexture, CompoundTag data, Map<Integer, List<Vertex>> vertices) {
+    private static void readCuboid(List<Integer> facesByTexture, CompoundTag data, Map<Integer, VertexArray> vertices) {
         //Read from and to
         FiguraVec3 from = FiguraVec3.of();
         readVec3(from, data, "f");
@@ -370,7 +374,7 @@ public class FiguraModelPartReader {
             readFace(data.getCompound("cube_data"), facesByTexture, direction, vertices, from, ftDiff);
     }
 
-    private static void readFace(CompoundTag faces, List<Integer> facesByTexture, String direction, Map<Integer, List<Vertex>> vertices, FiguraVec3 from, FiguraVec3 ftDiff) {
+    private static void readFace(CompoundTag faces, List<Integer> facesByTexture, String direction, Map<Integer, VertexArray> vertices, FiguraVec3 from, FiguraVec3 ftDiff) {
         if (faces.contains(direction)) {
             CompoundTag face = faces.getCompound(direction);
             short texId = face.getShort("tex");
@@ -380,6 +384,7 @@ public class FiguraModelPartReader {
             int rotation = (int) (face.getFloat("rot") / 90f);
             FiguraVec4 uv = FiguraVec4.of();
             readVec4(uv, face, "uv");
+            VertexArray array = vertices.computeIfAbsent((int) texId, i -> new VertexArray());
             for (int i = 0; i < 4; i++) {
                 FiguraVec3 tempPos = ftDiff.copy();
                 tempPos.multiply(faceData.get(direction)[i]);
@@ -387,19 +392,17 @@ public class FiguraModelPartReader {
 
                 FiguraVec2 normalizedUv = uvValues[(i + rotation) % 4];
 
-                List<Vertex> list = vertices.getOrDefault((int) texId, new ArrayList<>());
-                list.add(new Vertex(
+                array.add(
                         (float) tempPos.x, (float) tempPos.y, (float) tempPos.z,
                         (float) Mth.lerp(normalizedUv.x, uv.x, uv.z),
                         (float) Mth.lerp(normalizedUv.y, uv.y, uv.w),
                         (float) normal.x, (float) normal.y, (float) normal.z
-                ));
-                vertices.put((int) texId, list);
+                );
             }
         }
     }
 
-    private static void readMesh(List<Integer> facesByTexture, CompoundTag data, Map<Integer, List<Vertex>> vertices) {
+    private static void readMesh(List<Integer> facesByTexture, CompoundTag data, Map<Integer, VertexArray> vertices) {
         CompoundTag meshData = data.getCompound("mesh_data");
         //mesh_data:
         //"vtx": List<Float>, xyz
@@ -468,25 +471,22 @@ public class FiguraModelPartReader {
             p3.normalize();
             //p3 now contains the normal vector
 
-            // Add the vertex data to the appropriate builder
+            // Add the vertex data to the appropriate array
+            VertexArray array = vertices.computeIfAbsent(texId, i -> new VertexArray());
             for (int j = 0; j < numVerts; j++) {
-                List<Vertex> list = vertices.getOrDefault(texId, new ArrayList<>());
-                list.add(new Vertex(
+                array.add(
                         posArr[3 * j], posArr[3 * j + 1], posArr[3 * j + 2],
                         uvArr[2 * j], uvArr[2 * j + 1],
                         (float) p3.x, (float) p3.y, (float) p3.z
-                ));
-                vertices.put(texId, list);
+                );
             }
             // Add a vertex if necessary
             if (numVerts == 3) {
-                List<Vertex> list = vertices.getOrDefault(texId, new ArrayList<>());
-                list.add(new Vertex(
+                array.add(
                         posArr[6], posArr[7], posArr[8],
                         uvArr[4], uvArr[5],
                         (float) p3.x, (float) p3.y, (float) p3.z
-                ));
-                vertices.put(texId, list);
+                );
             }
 
             // Increment the counters for the vertex and UV lists
@@ -496,28 +496,138 @@ public class FiguraModelPartReader {
     }
 
     //thanks to Scarlet Light#7611
-    private static void smoothfy(Map<Integer, List<Vertex>> verticesByTextuers) {
+    //positions closer than this are welded together when smoothing
+    static final float WELD_EPSILON = 1e-5f;
+
+    //the cell of a position first, as most welded vertices are exact copies, then the cells around it
+    private static final int[] NEIGHBOUR_CELLS = new int[27 * 3];
+    static {
+        int i = 3;
+        for (int x = -1; x <= 1; x++) {
+            for (int y = -1; y <= 1; y++) {
+                for (int z = -1; z <= 1; z++) {
+                    if (x == 0 && y == 0 && z == 0)
+                        continue;
+                    NEIGHBOUR_CELLS[i++] = x;
+                    NEIGHBOUR_CELLS[i++] = y;
+                    NEIGHBOUR_CELLS[i++] = z;
+                }
+            }
+        }
+    }
+
+    private static void smoothfy(Map<Integer, VertexArray> verticesByTextuers) {
+        smoothfy(verticesByTextuers, WELD_EPSILON);
+    }
+
+    /**
+     * Gives vertices at the same position the average of their normals.
+     * Vertices are at the same position when they are at most epsilon apart on every axis,
+     * compared against the first vertex found at that position
+     */
+    static void smoothfy(Map<Integer, VertexArray> verticesByTextuers, float epsilon) {
+        if (!(epsilon > 0))
+            throw new IllegalArgumentException("Weld epsilon must be positive, got " + epsilon);
+
+        int count = 0;
+        for (VertexArray vertices : verticesByTextuers.values())
+            count += vertices.size();
+        if (count == 0)
+            return;
+
+        //positions are split in cells as big as epsilon, so a match can only be in the same cell or next to it
+        double scale = 1d / epsilon;
+
+        //open addressing table of cell -> group, a cell only ever holds the group started in it
+        int capacity = Integer.highestOneBit(count * 2 - 1) << 1;
+        int mask = capacity - 1;
+        int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+
+        //per group cell, position and normal sum, per vertex group
+        long[] cells = new long[count * 3];
+        float[] positions = new float[count * 3];
+        float[] normals = new float[count * 3];
+        int[] groups = new int[count];
+        int groupCount = 0;
+
         //separate vertices
-        Map<String, List<Vertex>> verticesByPos = new HashMap<>();
-        for (List<Vertex> vertices : verticesByTextuers.values()) {
-            for (Vertex vertex : vertices) {
-                String id = String.valueOf(vertex.getPos());
-                List<Vertex> list = verticesByPos.computeIfAbsent(id, str -> new ArrayList<>(4));
-                list.add(vertex);
+        int v = 0;
+        for (VertexArray vertices : verticesByTextuers.values()) {
+            float[] data = vertices.getData();
+            for (int i = 0, o = 0; i < vertices.size(); i++, o += VertexArray.STRIDE, v++) {
+                float px = data[o + VertexArray.X], py = data[o + VertexArray.Y], pz = data[o + VertexArray.Z];
+                long x = (long) Math.floor(px * scale);
+                long y = (long) Math.floor(py * scale);
+                long z = (long) Math.floor(pz * scale);
+
+                int group = -1;
+                for (int n = 0; n < NEIGHBOUR_CELLS.length && group == -1; n += 3) {
+                    int found = table[findCell(table, mask, cells, x + NEIGHBOUR_CELLS[n], y + NEIGHBOUR_CELLS[n + 1], z + NEIGHBOUR_CELLS[n + 2])];
+                    int p = found * 3;
+                    if (found != -1 && Math.abs(positions[p] - px) <= epsilon && Math.abs(positions[p + 1] - py) <= epsilon && Math.abs(positions[p + 2] - pz) <= epsilon)
+                        group = found;
+                }
+
+                if (group == -1) {
+                    group = groupCount++;
+                    table[findCell(table, mask, cells, x, y, z)] = group;
+                    int c = group * 3;
+                    cells[c] = x;
+                    cells[c + 1] = y;
+                    cells[c + 2] = z;
+                    positions[c] = px;
+                    positions[c + 1] = py;
+                    positions[c + 2] = pz;
+                }
+
+                //sum their normals
+                int n = group * 3;
+                normals[n] += data[o + VertexArray.NX];
+                normals[n + 1] += data[o + VertexArray.NY];
+                normals[n + 2] += data[o + VertexArray.NZ];
+                groups[v] = group;
+            }
+        }
+
+        //normalize the normals
+        for (int n = 0; n < groupCount * 3; n += 3) {
+            double len = Math.sqrt(normals[n] * normals[n] + normals[n + 1] * normals[n + 1] + normals[n + 2] * normals[n + 2]);
+            if (len > 0) {
+                normals[n] /= len;
+                normals[n + 1] /= len;
+                normals[n + 2] /= len;
             }
         }
 
-        //for all separated vertices
-        for (List<Vertex> vertices : verticesByPos.values()) {
-            //sum their normals
-            FiguraVec3 result = FiguraVec3.of();
-            for (Vertex vertex : vertices)
-                result.add(vertex.getNormal());
-            //normalize the normal
-            result.normalize();
-            //apply new normal
-            for (Vertex vertex : vertices)
-                vertex.setNormal(result);
+        //apply new normals
+        v = 0;
+        for (VertexArray vertices : verticesByTextuers.values()) {
+            float[] data = vertices.getData();
+            for (int i = 0, o = 0; i < vertices.size(); i++, o += VertexArray.STRIDE, v++) {
+                int n = groups[v] * 3;
+                data[o + VertexArray.NX] = normals[n];
+                data[o + VertexArray.NY] = normals[n + 1];
+                data[o + VertexArray.NZ] = normals[n + 2];
+            }
         }
     }
+
+    //the slot holding the group of a cell, or the empty slot where it goes
+    private static int findCell(int[] table, int mask, long[] cells, long x, long y, long z) {
+        int slot = mix(x, y, z) & mask;
+        int group;
+        while ((group = table[slot]) != -1) {
+            int c = group * 3;
+            if (cells[c] == x && cells[c + 1] == y && cells[c + 2] == z)
+                break;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(long x, long y, long z) {
+        long hash = x * 0x9E3779B97F4A7C15L ^ y * 0xC2B2AE3D27D4EB4FL ^ z * 0x165667B19E3779F9L;
+        return (int) (hash ^ (hash >>> 32));
+    }
 }
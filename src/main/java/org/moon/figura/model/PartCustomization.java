@@ -8,7 +8,8 @@ import org.moon.figura.math.vector.FiguraVec3;
 import org.moon.figura.model.rendering.texture.FiguraTextureSet;
 import org.moon.figura.model.rendering.texture.RenderTypes;
 
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.EmptyStackException;
 
 public class PartCustomization {
 
@@ -369,34 +370,48 @@ public class PartCustomization {
         GROUP
     }
 
+    /**
+     * Depth-indexed stack that reuses its customizations between frames.
+     * Slots are only ever allocated when the stack grows deeper than it has been before,
+     * so anything returned by peek() is only valid until that depth is pushed again.
+     */
     public static class PartCustomizationStack {
 
-        private final Stack<PartCustomization> stack = new Stack<>() {{
-            add(new PartCustomization());
-        }};
+        private PartCustomization[] stack = new PartCustomization[16];
+        private int top = 0;
+
+        public PartCustomizationStack() {
+            stack[0] = new PartCustomization();
+        }
 
         public void push(PartCustomization customization) {
+            //grab the next slot
+            if (++top == stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+
+            PartCustomization newCustomization = stack[top];
+            if (newCustomization == null)
+                newCustomization = stack[top] = new PartCustomization();
+
             //copy stack
-            PartCustomization newCustomization = new PartCustomization();
-            stack.peek().copyTo(newCustomization);
+            stack[top - 1].copyTo(newCustomization);
 
             //modify
             newCustomization.modify(customization);
-
-            //add
-            stack.push(newCustomization);
         }
 
         public void pop() {
-            stack.pop();
+            if (top == 0)
+                throw new EmptyStackException();
+            top--;
         }
 
         public PartCustomization peek() {
-            return stack.peek();
+            return stack[top];
         }
 
         public boolean isEmpty() {
-            return stack.size() == 1;
+            return top == 0;
         }
     }
 }
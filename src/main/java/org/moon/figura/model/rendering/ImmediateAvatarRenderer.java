@@ -32,7 +32,6 @@ import org.moon.figura.utils.ui.UIHelper;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.function.Consumer;
 
 public class ImmediateAvatarRenderer extends AvatarRenderer {
 
@@ -40,6 +39,12 @@ public class ImmediateAvatarRenderer extends AvatarRenderer {
 
     public static final FiguraMat4 VIEW_TO_WORLD_MATRIX = FiguraMat4.of();
     private static final PartCustomization pivotOffsetter = new PartCustomization();
+    private static final PartCustomization EMPTY_CUSTOMIZATION = new PartCustomization();
+
+    //shared by every render, so the render state cache can tell unchanged root textures apart by identity
+    private static final Pair<FiguraTextureSet.OverrideType, Object> ROOT_PRIMARY_TEXTURE = Pair.of(FiguraTextureSet.OverrideType.PRIMARY, null);
+    private static final Pair<FiguraTextureSet.OverrideType, Object> ROOT_SECONDARY_TEXTURE = Pair.of(FiguraTextureSet.OverrideType.SECONDARY, null);
+    private final PartCustomization rootCustomization = new PartCustomization();
     protected static final VertexBuffer VERTEX_BUFFER = new VertexBuffer();
 
     public ImmediateAvatarRenderer(Avatar avatar) {
@@ -99,6 +104,9 @@ public class ImmediateAvatarRenderer extends AvatarRenderer {
         doIrisEmissiveFix = (irisConfig >= 2 && ClientAPI.hasIrisShader()) || (avatar.renderMode != EntityRenderMode.RENDER && avatar.renderMode != EntityRenderMode.WORLD);
         offsetRenderLayers = irisConfig >= 1;
 
+        //skins may have changed since the last frame
+        playerTexturesResolved = 0;
+
         //custom textures
         for (FiguraTextureSet set : textureSets)
             set.uploadIfNeeded();
@@ -136,10 +144,10 @@ public class ImmediateAvatarRenderer extends AvatarRenderer {
                         if (currentFilterScheme.parentType == ParentType.Item && part != itemToRender)
                             continue;
 
-                        boolean saved = part.savedCustomization != null;
+                        boolean saved = part.hasSavedCustomization;
                         if (saved) {
                             customizationStack.push(part.savedCustomization);
-                            part.savedCustomization = null;
+                            part.hasSavedCustomization = false;
                         }
 
                         renderPart(part, remainingComplexity, currentFilterScheme.initialValue);
@@ -179,7 +187,9 @@ public class ImmediateAvatarRenderer extends AvatarRenderer {
     }
 
     protected PartCustomization setupRootCustomization(double vertOffset) {
-        PartCustomization customization = new PartCustomization();
+        //the stack copies whatever is pushed, so the root can be reused
+        PartCustomization customization = rootCustomization;
+        EMPTY_CUSTOMIZATION.copyTo(customization);
 
         customization.setPrimaryRenderType(RenderTypes.TRANSLUCENT);
         customization.setSecondaryRenderType(RenderTypes.EMISSIVE);
@@ -197,8 +207,8 @@ public class ImmediateAvatarRenderer extends AvatarRenderer {
         customization.alpha = alpha;
         customization.overlay = overlay;
 
-        customization.primaryTexture = Pair.of(FiguraTextureSet.OverrideType.PRIMARY, null);
-        customization.secondaryTexture = Pair.of(FiguraTextureSet.OverrideType.SECONDARY, null);
+        customization.primaryTexture = ROOT_PRIMARY_TEXTURE;
+        customization.secondaryTexture = ROOT_SECONDARY_TEXTURE;
 
         return customization;
     }
@@ -212,8 +222,13 @@ public class ImmediateAvatarRenderer extends AvatarRenderer {
         FiguraMod.pushProfiler("predicate");
         Boolean thisPassedPredicate = currentFilterScheme.test(part.parentType, prevPredicate);
         if (thisPassedPredicate == null || (custom.visible != null && !custom.visible)) {
-            if (part.parentType.isRenderLayer)
-                part.savedCustomization = customizationStack.peek();
+            if (part.parentType.isRenderLayer) {
+                //stack entries are reused, so keep a copy, in an instance owned by the part
+                if (part.savedCustomization == null)
+                    part.savedCustomization = new PartCustomization();
+                customizationStack.peek().copyTo(part.savedCustomization);
+                part.hasSavedCustomization = true;
+            }
             FiguraMod.popProfiler(2);
             return true;
         }
@@ -460,15 +475,15 @@ public class ImmediateAvatarRenderer extends AvatarRenderer {
         FiguraMod.popProfiler(2);
     }
 
-    public void pushFaces(int faceCount, int[] remainingComplexity, FiguraTextureSet textureSet, List<Vertex> vertices) {
+    public void pushFaces(int faceCount, int[] remainingComplexity, FiguraTextureSet textureSet, VertexArray vertices, RenderState primaryState, RenderState secondaryState) {
         //Handle cases that we can quickly
-        if (faceCount == 0 || vertices.isEmpty())
+        if (faceCount == 0 || vertices == null || vertices.isEmpty())
             return;
 
         PartCustomization customization = customizationStack.peek();
 
-        VertexData primary = getTexture(customization, textureSet, true);
-        VertexData secondary = getTexture(customization, textureSet, false);
+        VertexData primary = getTexture(customization, textureSet, primaryState, true);
+        VertexData secondary = getTexture(customization, textureSet, secondaryState, false);
 
         if (primary.renderType == null && secondary.renderType == null) {
             remainingComplexity[0] += faceCount;
@@ -481,87 +496,173 @@ public class ImmediateAvatarRenderer extends AvatarRenderer {
             pushToBuffer(faceCount, secondary, customization, textureSet, vertices);
     }
 
-    private VertexData getTexture(PartCustomization customization, FiguraTextureSet textureSet, boolean primary) {
+    private VertexData getTexture(PartCustomization customization, FiguraTextureSet textureSet, RenderState state, boolean primary) {
         RenderTypes types = primary ? customization.getPrimaryRenderType() : customization.getSecondaryRenderType();
         Pair<FiguraTextureSet.OverrideType, Object> texture = primary ? customization.primaryTexture : customization.secondaryTexture;
-        VertexData ret = new VertexData();
+        VertexData ret = primary ? primaryData : secondaryData;
+        ret.reset();
 
         if (types == RenderTypes.NONE)
             return ret;
 
-        //get texture
-        ResourceLocation id = textureSet.getOverrideTexture(avatar.owner, texture);
-
         //color
         ret.color = primary ? customization.color : customization.color2;
 
         //primary
         ret.primary = primary;
 
+        //get texture
+        //player textures can change at any time, everything else only changes with the override itself
+        FiguraTextureSet.OverrideType overrideType = texture == null ? null : texture.getFirst();
+        ResourceLocation id;
+        if (overrideType == FiguraTextureSet.OverrideType.SKIN || overrideType == FiguraTextureSet.OverrideType.CAPE || overrideType == FiguraTextureSet.OverrideType.ELYTRA)
+            id = getPlayerTexture(overrideType);
+        else if (state.resolved && state.texture == texture && state.textureSet == textureSet)
+            id = state.id;
+        else
+            id = textureSet.getOverrideTexture(avatar.owner, texture);
+
+        //reuse the render type from the last frame when nothing it depends on has changed
+        int flags = (translucent ? 1 : 0) | (glowing ? 2 : 0) | (offsetRenderLayers ? 4 : 0) | (doIrisEmissiveFix ? 8 : 0);
+        if (!state.resolved || state.types != types || state.texture != texture || state.textureSet != textureSet || state.id != id || state.flags != flags) {
+            state.resolve(types, texture, textureSet, id, flags);
+            resolveRenderType(state, types, id, primary);
+        }
+
+        ret.renderType = state.renderType;
+        ret.fullBright = state.fullBright;
+        ret.vertexOffset = state.vertexOffset;
+        return ret;
+    }
+
+    private void resolveRenderType(RenderState state, RenderTypes types, ResourceLocation id, boolean primary) {
         //get render type
         if (id != null) {
             if (translucent) {
-                ret.renderType = RenderType.itemEntityTranslucentCull(id);
-                return ret;
+                state.renderType = RenderType.itemEntityTranslucentCull(id);
+                return;
             }
             if (glowing) {
-                ret.renderType = RenderType.outline(id);
-                return ret;
+                state.renderType = RenderType.outline(id);
+                return;
             }
         }
 
         if (types == null)
-            return ret;
+            return;
 
         if (offsetRenderLayers && !primary && types.isOffset())
-            ret.vertexOffset = FiguraMod.VERTEX_OFFSET;
+            state.vertexOffset = FiguraMod.VERTEX_OFFSET;
 
         //Switch to cutout with fullbright if the iris emissive fix is enabled
         if (doIrisEmissiveFix && types == RenderTypes.EMISSIVE) {
-            ret.fullBright = true;
-            ret.renderType = RenderTypes.TRANSLUCENT_CULL.get(id);
+            state.fullBright = true;
+            state.renderType = RenderTypes.TRANSLUCENT_CULL.get(id);
         } else {
-            ret.renderType = types.get(id);
+            state.renderType = types.get(id);
         }
+    }
 
-        return ret;
+    //skin, cape and elytra of the owner, looked up at most once per frame
+    private final ResourceLocation[] playerTextures = new ResourceLocation[3];
+    private int playerTexturesResolved;
+
+    private ResourceLocation getPlayerTexture(FiguraTextureSet.OverrideType type) {
+        int i = type.ordinal();
+        if ((playerTexturesResolved & (1 << i)) == 0) {
+            playerTextures[i] = FiguraTextureSet.getPlayerTexture(avatar.owner, type);
+            playerTexturesResolved |= 1 << i;
+        }
+        return playerTextures[i];
     }
 
+    private final VertexData primaryData = new VertexData();
+    private final VertexData secondaryData = new VertexData();
+
     private static final FiguraVec4 pos = FiguraVec4.of();
     private static final FiguraVec3 normal = FiguraVec3.of();
     private static final FiguraVec3 uv = FiguraVec3.of(0, 0, 1);
-    private void pushToBuffer(int faceCount, VertexData vertexData, PartCustomization customization, FiguraTextureSet textureSet, List<Vertex> vertices) {
+    private void pushToBuffer(int faceCount, VertexData vertexData, PartCustomization customization, FiguraTextureSet textureSet, VertexArray vertices) {
         int vertCount = faceCount * 4;
+        float[] data = vertices.getData();
 
-        FiguraVec3 uvFixer = FiguraVec3.of();
-        uvFixer.set(textureSet.getWidth(), textureSet.getHeight(), 1); //Dividing by this makes uv 0 to 1
+        //Dividing by this makes uv 0 to 1
+        double uvW = textureSet.getWidth();
+        double uvH = textureSet.getHeight();
 
         int overlay = customization.overlay;
         int light = vertexData.fullBright ? LightTexture.FULL_BRIGHT : customization.light;
-
-        VERTEX_BUFFER.getBufferFor(vertexData.renderType, vertexData.primary, vertexConsumer -> {
-            for (int i = 0; i < vertCount; i++) {
-                Vertex vertex = vertices.get(i);
-
-                pos.set(vertex.x, vertex.y, vertex.z, 1);
-                pos.transform(customization.positionMatrix);
-                pos.add(pos.normalized().scale(vertexData.vertexOffset));
-                normal.set(vertex.nx, vertex.ny, vertex.nz);
-                normal.transform(customization.normalMatrix);
-                uv.set(vertex.u, vertex.v, 1);
-                uv.divide(uvFixer);
-                uv.transform(customization.uvMatrix);
-
-                vertexConsumer
-                        .vertex(pos.x, pos.y, pos.z)
-                        .color((float) vertexData.color.x, (float) vertexData.color.y, (float) vertexData.color.z, customization.alpha)
-                        .uv((float) uv.x, (float) uv.y)
-                        .overlayCoords(overlay)
-                        .uv2(light)
-                        .normal((float) normal.x, (float) normal.y, (float) normal.z)
-                        .endVertex();
+        float r = (float) vertexData.color.x;
+        float g = (float) vertexData.color.y;
+        float b = (float) vertexData.color.z;
+        float a = customization.alpha;
+        double offset = vertexData.vertexOffset;
+
+        //write the transformed vertices straight into the staging buffer
+        VertexBatch batch = VERTEX_BUFFER.getBufferFor(vertexData.renderType, vertexData.primary);
+        int start = batch.reserve(vertCount);
+        float[] floats = batch.floats;
+        int[] ints = batch.ints;
+
+        for (int i = 0, o = 0; i < vertCount; i++, o += VertexArray.STRIDE) {
+            pos.set(data[o + VertexArray.X], data[o + VertexArray.Y], data[o + VertexArray.Z], 1);
+            pos.transform(customization.positionMatrix);
+            if (offset != 0) {
+                double len = pos.length();
+                if (len > 0)
+                    pos.add(pos.x / len * offset, pos.y / len * offset, pos.z / len * offset, pos.w / len * offset);
             }
-        });
+            normal.set(data[o + VertexArray.NX], data[o + VertexArray.NY], data[o + VertexArray.NZ]);
+            normal.transform(customization.normalMatrix);
+            uv.set(data[o + VertexArray.U] / uvW, data[o + VertexArray.V] / uvH, 1);
+            uv.transform(customization.uvMatrix);
+
+            int f = (start + i) * VertexBatch.FLOATS;
+            floats[f] = (float) pos.x;
+            floats[f + 1] = (float) pos.y;
+            floats[f + 2] = (float) pos.z;
+            floats[f + 3] = r;
+            floats[f + 4] = g;
+            floats[f + 5] = b;
+            floats[f + 6] = a;
+            floats[f + 7] = (float) uv.x;
+            floats[f + 8] = (float) uv.y;
+            floats[f + 9] = (float) normal.x;
+            floats[f + 10] = (float) normal.y;
+            floats[f + 11] = (float) normal.z;
+
+            int n = (start + i) * VertexBatch.INTS;
+            ints[n] = overlay;
+            ints[n + 1] = light;
+        }
+    }
+
+    /**
+     * Render type resolved for one texture of a part, kept between frames
+     */
+    public static class RenderState {
+        private boolean resolved;
+        private RenderTypes types;
+        private Pair<FiguraTextureSet.OverrideType, Object> texture;
+        private FiguraTextureSet textureSet;
+        private ResourceLocation id;
+        private int flags;
+
+        private RenderType renderType;
+        private boolean fullBright;
+        private float vertexOffset;
+
+        private void resolve(RenderTypes types, Pair<FiguraTextureSet.OverrideType, Object> texture, FiguraTextureSet textureSet, ResourceLocation id, int flags) {
+            this.resolved = true;
+            this.types = types;
+            this.texture = texture;
+            this.textureSet = textureSet;
+            this.id = id;
+            this.flags = flags;
+            this.renderType = null;
+            this.fullBright = false;
+            this.vertexOffset = 0f;
+        }
     }
 
     private static class VertexData {
@@ -570,27 +671,97 @@ public class ImmediateAvatarRenderer extends AvatarRenderer {
         public float vertexOffset;
         public FiguraVec3 color;
         public boolean primary;
+
+        public void reset() {
+            renderType = null;
+            fullBright = false;
+            vertexOffset = 0f;
+            color = null;
+            primary = false;
+        }
     }
 
-    private static class VertexBuffer {
-        private final HashMap<RenderType, List<Consumer<VertexConsumer>>> primaryBuffers = new LinkedHashMap<>();
-        private final HashMap<RenderType, List<Consumer<VertexConsumer>>> secondaryBuffers = new LinkedHashMap<>();
+    /**
+     * Staged vertices of a single render type, stored as primitive arrays.
+     * Batches live for as long as their render type keeps being used, so their arrays are reused between frames.
+     */
+    private static class VertexBatch {
+        //x, y, z, r, g, b, a, u, v, nx, ny, nz
+        public static final int FLOATS = 12;
+        //overlay, light
+        public static final int INTS = 2;
+
+        private final RenderType renderType;
+        private float[] floats = new float[FLOATS * 64];
+        private int[] ints = new int[INTS * 64];
+        private int size;
+        private boolean used;
+
+        private VertexBatch(RenderType renderType) {
+            this.renderType = renderType;
+        }
+
+        //makes room for more vertices, returning the index of the first one
+        public int reserve(int count) {
+            int start = size;
+            size += count;
+            if (size * FLOATS > floats.length) {
+                int capacity = Math.max(floats.length / FLOATS * 2, size);
+                floats = Arrays.copyOf(floats, capacity * FLOATS);
+                ints = Arrays.copyOf(ints, capacity * INTS);
+            }
+            return start;
+        }
+
+        public void flush(VertexConsumer consumer) {
+            for (int i = 0, f = 0, n = 0; i < size; i++, f += FLOATS, n += INTS) {
+                consumer.vertex(
+                        floats[f], floats[f + 1], floats[f + 2],
+                        floats[f + 3], floats[f + 4], floats[f + 5], floats[f + 6],
+                        floats[f + 7], floats[f + 8],
+                        ints[n], ints[n + 1],
+                        floats[f + 9], floats[f + 10], floats[f + 11]
+                );
+            }
+            size = 0;
+        }
+    }
 
-        public void getBufferFor(RenderType renderType, boolean primary, Consumer<VertexConsumer> consumer) {
-            HashMap<RenderType, List<Consumer<VertexConsumer>>> buffer = primary ? primaryBuffers : secondaryBuffers;
-            List<Consumer<VertexConsumer>> list = buffer.computeIfAbsent(renderType, renderType1 -> new ArrayList<>());
-            list.add(consumer);
+    private static class VertexBuffer {
+        private final Map<RenderType, VertexBatch> primaryBatches = new HashMap<>();
+        private final Map<RenderType, VertexBatch> secondaryBatches = new HashMap<>();
+        //batches used this frame, in the order they were first pushed to
+        private final List<VertexBatch> primaryOrder = new ArrayList<>();
+        private final List<VertexBatch> secondaryOrder = new ArrayList<>();
+
+        public VertexBatch getBufferFor(RenderType renderType, boolean primary) {
+            Map<RenderType, VertexBatch> batches = primary ? primaryBatches : secondaryBatches;
+            VertexBatch batch = batches.get(renderType);
+            if (batch == null) {
+                batch = new VertexBatch(renderType);
+                batches.put(renderType, batch);
+            }
+            if (!batch.used) {
+                batch.used = true;
+                (primary ? primaryOrder : secondaryOrder).add(batch);
+            }
+            return batch;
         }
 
         public void consume(boolean primary, MultiBufferSource bufferSource) {
-            HashMap<RenderType, List<Consumer<VertexConsumer>>> map = primary ? primaryBuffers : secondaryBuffers;
-            for (Map.Entry<RenderType, List<Consumer<VertexConsumer>>> entry : map.entrySet()) {
-                VertexConsumer vertexConsumer = bufferSource.getBuffer(entry.getKey());
-                List<Consumer<VertexConsumer>> consumers = entry.getValue();
-                for (Consumer<VertexConsumer> consumer : consumers)
-                    consumer.accept(vertexConsumer);
+            Map<RenderType, VertexBatch> batches = primary ? primaryBatches : secondaryBatches;
+            List<VertexBatch> order = primary ? primaryOrder : secondaryOrder;
+
+            //forget render types that were not used this frame
+            if (batches.size() > order.size())
+                batches.values().removeIf(batch -> !batch.used);
+
+            for (int i = 0; i < order.size(); i++) {
+                VertexBatch batch = order.get(i);
+                batch.flush(bufferSource.getBuffer(batch.renderType));
+                batch.used = false;
             }
-            map.clear();
+            order.clear();
         }
     }
 }
@@ -15,24 +15,27 @@ import org.moon.figura.utils.LuaUtils;
 )
 public class Vertex {
 
-    public float x, y, z;
-    public float u, v;
-    public float nx, ny, nz;
-
-    public Vertex(float x, float y, float z, float u, float v, float nx, float ny, float nz) {
-        this.x = x; this.y = y; this.z = z;
-        this.u = u; this.v = v;
-        this.nx = nx; this.ny = ny; this.nz = nz;
+    //view over the packed vertex data
+    private final VertexArray array;
+    private final int offset;
+
+    public Vertex(VertexArray array, int index) {
+        this.array = array;
+        this.offset = index * VertexArray.STRIDE;
+    }
+
+    private float get(int i) {
+        return array.data[offset + i];
     }
 
-    public Vertex copy() {
-        return new Vertex(x, y, z, u, v, nx, ny, nz);
+    private void set(int i, double value) {
+        array.data[offset + i] = (float) value;
     }
 
     @LuaWhitelist
     @LuaMethodDoc("vertex.get_pos")
     public FiguraVec3 getPos() {
-        return FiguraVec3.of(x, y, z);
+        return FiguraVec3.of(get(VertexArray.X), get(VertexArray.Y), get(VertexArray.Z));
     }
 
     @LuaWhitelist
@@ -52,9 +55,9 @@ public class Vertex {
     )
     public Vertex setPos(Object x, Double y, Double z) {
         FiguraVec3 vec = LuaUtils.parseVec3("setPos", x, y, z);
-        this.x = (float) vec.x;
-        this.y = (float) vec.y;
-        this.z = (float) vec.z;
+        set(VertexArray.X, vec.x);
+        set(VertexArray.Y, vec.y);
+        set(VertexArray.Z, vec.z);
         return this;
     }
 
@@ -66,7 +69,7 @@ public class Vertex {
     @LuaWhitelist
     @LuaMethodDoc("vertex.get_uv")
     public FiguraVec2 getUV() {
-        return FiguraVec2.of(u, v);
+        return FiguraVec2.of(get(VertexArray.U), get(VertexArray.V));
     }
 
     @LuaWhitelist
@@ -86,8 +89,8 @@ public class Vertex {
     )
     public Vertex setUV(Object x, Double y) {
         FiguraVec2 vec = LuaUtils.parseVec2("setUV", x, y);
-        this.u = (float) vec.x;
-        this.v = (float) vec.y;
+        set(VertexArray.U, vec.x);
+        set(VertexArray.V, vec.y);
         return this;
     }
 
@@ -99,7 +102,7 @@ public class Vertex {
     @LuaWhitelist
     @LuaMethodDoc("vertex.get_normal")
     public FiguraVec3 getNormal() {
-        return FiguraVec3.of(nx, ny, nz);
+        return FiguraVec3.of(get(VertexArray.NX), get(VertexArray.NY), get(VertexArray.NZ));
     }
 
     @LuaWhitelist
@@ -124,9 +127,9 @@ public class Vertex {
     }
 
     public void setNormal(FiguraVec3 vec) {
-        this.nx = (float) vec.x;
-        this.ny = (float) vec.y;
-        this.nz = (float) vec.z;
+        set(VertexArray.NX, vec.x);
+        set(VertexArray.NY, vec.y);
+        set(VertexArray.NZ, vec.z);
     }
 
     @LuaWhitelist
@@ -0,0 +1,80 @@
+package org.moon.figura.model.rendering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Packed, interleaved vertex storage for a single texture of a model part.
+ * Every vertex takes {@link #STRIDE} floats in the order x, y, z, u, v, nx, ny, nz,
+ * so the renderer can stream straight through the array without touching any per-vertex objects.
+ */
+public class VertexArray {
+
+    public static final int STRIDE = 8;
+    public static final int X = 0, Y = 1, Z = 2, U = 3, V = 4, NX = 5, NY = 6, NZ = 7;
+
+    float[] data;
+    private int size;
+
+    //lua views, only created when a script asks for them
+    private List<Vertex> views;
+
+    public VertexArray() {
+        this(4);
+    }
+
+    public VertexArray(int capacity) {
+        this.data = new float[Math.max(capacity, 1) * STRIDE];
+    }
+
+    private VertexArray(float[] data, int size) {
+        this.data = data;
+        this.size = size;
+    }
+
+    public void add(float x, float y, float z, float u, float v, float nx, float ny, float nz) {
+        int i = size * STRIDE;
+        if (i + STRIDE > data.length)
+            data = Arrays.copyOf(data, Math.max(data.length * 2, i + STRIDE));
+
+        data[i + X] = x; data[i + Y] = y; data[i + Z] = z;
+        data[i + U] = u; data[i + V] = v;
+        data[i + NX] = nx; data[i + NY] = ny; data[i + NZ] = nz;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    //drop the unused capacity left from building
+    public void trim() {
+        if (data.length != size * STRIDE)
+            data = Arrays.copyOf(data, size * STRIDE);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public float[] getData() {
+        return data;
+    }
+
+    public VertexArray copy() {
+        return new VertexArray(Arrays.copyOf(data, size * STRIDE), size);
+    }
+
+    public List<Vertex> getVertices() {
+        if (views == null)
+            views = new ArrayList<>(size);
+        while (views.size() < size)
+            views.add(new Vertex(this, views.size()));
+        return views.size() == size ? views : views.subList(0, size);
+    }
+}
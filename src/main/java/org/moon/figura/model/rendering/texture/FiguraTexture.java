@@ -10,6 +10,7 @@ import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.packs.resources.ResourceManager;
 import org.luaj.vm2.LuaError;
 import org.luaj.vm2.LuaFunction;
+import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
 import org.lwjgl.BufferUtils;
 import org.moon.figura.FiguraMod;
@@ -41,12 +42,20 @@ import java.util.UUID;
 )
 public class FiguraTexture extends SimpleTexture {
 
+    private static final int PIXEL_COST = 8; //pixels per instruction, for the bulk pixel methods
+
     /**
      * The ID of the texture, used to register to Minecraft.
      */
     private boolean registered = false;
     private boolean dirty = true;
     private boolean modified = false;
+    private boolean allocated = false;
+
+    /**
+     * Area changed since the last upload, empty when minX > maxX
+     */
+    private int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = -1, maxY = -1;
     private final String name;
     private final Avatar owner;
 
@@ -119,11 +128,27 @@ public class FiguraTexture extends SimpleTexture {
         if (dirty && !isClosed) {
             dirty = false;
 
-            RenderCall runnable = () -> {
-                //Upload texture to GPU.
-                TextureUtil.prepareImage(this.getId(), texture.getWidth(), texture.getHeight());
-                texture.upload(0, 0, 0, false);
-            };
+            RenderCall runnable;
+            if (!allocated) {
+                allocated = true;
+                clearChanges();
+                runnable = () -> {
+                    //Upload texture to GPU.
+                    TextureUtil.prepareImage(this.getId(), texture.getWidth(), texture.getHeight());
+                    texture.upload(0, 0, 0, false);
+                };
+            } else if (minX <= maxX && minY <= maxY) {
+                //the size never changes, so only send the changed area
+                int x = minX, y = minY, width = maxX - minX + 1, height = maxY - minY + 1;
+                clearChanges();
+                runnable = () -> {
+                    if (isClosed) return;
+                    this.bind();
+                    texture.upload(0, x, y, x, y, width, height, false, false);
+                };
+            } else {
+                return;
+            }
 
             if (RenderSystem.isOnRenderThreadOrInit()) {
                 runnable.execute();
@@ -133,6 +158,25 @@ public class FiguraTexture extends SimpleTexture {
         }
     }
 
+    private void markChanged(int x, int y, int width, int height) {
+        int x1 = Math.min(x + width, texture.getWidth()) - 1;
+        int y1 = Math.min(y + height, texture.getHeight()) - 1;
+        x = Math.max(x, 0);
+        y = Math.max(y, 0);
+        if (x > x1 || y > y1)
+            return;
+
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x1);
+        maxY = Math.max(maxY, y1);
+    }
+
+    private void clearChanges() {
+        minX = minY = Integer.MAX_VALUE;
+        maxX = maxY = -1;
+    }
+
     public void writeTexture(Path dest) throws IOException {
         texture.writeToFile(dest);
     }
@@ -224,6 +268,7 @@ public class FiguraTexture extends SimpleTexture {
         try {
             backupImage();
             texture.setPixelRGBA(x, y, ColorUtils.rgbaToIntABGR(parseColor("setPixel", r, g, b, a)));
+            markChanged(x, y, 1, 1);
             return this;
         } catch (Exception e) {
             throw new LuaError(e.getMessage());
@@ -255,6 +300,7 @@ public class FiguraTexture extends SimpleTexture {
     public FiguraTexture fill(int x, int y, int width, int height, Object r, Double g, Double b, Double a) {
         try {
             backupImage();
+            markChanged(x, y, width, height);
             texture.fillRect(x, y, width, height, ColorUtils.rgbaToIntABGR(parseColor("fill", r, g, b, a)));
             return this;
         } catch (Exception e) {
@@ -275,6 +321,7 @@ public class FiguraTexture extends SimpleTexture {
         if (modified) {
             this.texture.copyFrom(backup);
             this.modified = false;
+            markChanged(0, 0, getWidth(), getHeight());
         }
         return this;
     }
@@ -318,16 +365,134 @@ public class FiguraTexture extends SimpleTexture {
             value = "texture.apply_matrix"
     )
     public FiguraTexture applyMatrix(int x, int y, int width, int height, @LuaNotNil FiguraMat4 matrix) {
+        checkRegion(x, y, width, height);
+        backupImage();
+        markChanged(x, y, width, height);
+
+        //same as transforming the rgba vector of each pixel, without creating any vector
+        double[] m = {
+                matrix.v11, matrix.v12, matrix.v13, matrix.v14,
+                matrix.v21, matrix.v22, matrix.v23, matrix.v24,
+                matrix.v31, matrix.v32, matrix.v33, matrix.v34,
+                matrix.v41, matrix.v42, matrix.v43, matrix.v44
+        };
+
         for (int i = y; i < y + height; i++) {
             for (int j = x; j < x + width; j++) {
-                FiguraVec4 color = getPixel(j, i);
-                color.transform(matrix);
-                setPixel(j, i, color, null, null, null);
+                int abgr = texture.getPixelRGBA(j, i);
+                double r = (abgr & 0xFF) / 255d;
+                double g = (abgr >> 8 & 0xFF) / 255d;
+                double b = (abgr >> 16 & 0xFF) / 255d;
+                double a = (abgr >>> 24) / 255d;
+
+                texture.setPixelRGBA(j, i, toABGR(
+                        m[0] * r + m[1] * g + m[2] * b + m[3] * a,
+                        m[4] * r + m[5] * g + m[6] * b + m[7] * a,
+                        m[8] * r + m[9] * g + m[10] * b + m[11] * a,
+                        m[12] * r + m[13] * g + m[14] * b + m[15] * a
+                ));
             }
         }
         return this;
     }
 
+    @LuaWhitelist
+    @LuaMethodDoc(
+            overloads = @LuaMethodOverload(
+                    argumentTypes = {Integer.class, Integer.class, Integer.class, Integer.class},
+                    argumentNames = {"x", "y", "width", "height"}
+            ),
+            value = "texture.get_pixels"
+    )
+    public LuaTable getPixels(int x, int y, int width, int height) {
+        checkRegion(x, y, width, height);
+
+        LuaTable table = new LuaTable(width * height, 0);
+        int index = 1;
+        for (int i = y; i < y + height; i++) {
+            for (int j = x; j < x + width; j++)
+                table.rawset(index++, LuaValue.valueOf(Integer.toUnsignedLong(Integer.reverseBytes(texture.getPixelRGBA(j, i)))));
+        }
+        return table;
+    }
+
+    @LuaWhitelist
+    @LuaMethodDoc(
+            overloads = @LuaMethodOverload(
+                    argumentTypes = {Integer.class, Integer.class, Integer.class, Integer.class, LuaTable.class},
+                    argumentNames = {"x", "y", "width", "height", "pixels"}
+            ),
+            value = "texture.set_pixels"
+    )
+    public FiguraTexture setPixels(int x, int y, int width, int height, @LuaNotNil LuaTable pixels) {
+        checkRegion(x, y, width, height);
+        if (pixels.length() < width * height)
+            throw new LuaError("Expected " + width * height + " pixels, got " + pixels.length());
+
+        backupImage();
+        markChanged(x, y, width, height);
+
+        int index = 1;
+        for (int i = y; i < y + height; i++) {
+            for (int j = x; j < x + width; j++)
+                texture.setPixelRGBA(j, i, Integer.reverseBytes((int) pixels.rawget(index++).checklong()));
+        }
+        return this;
+    }
+
+    @LuaWhitelist
+    @LuaMethodDoc(
+            overloads = {
+                    @LuaMethodOverload(
+                            argumentTypes = {Integer.class, Integer.class, Integer.class, Integer.class, FiguraVec4.class},
+                            argumentNames = {"x", "y", "width", "height", "rgba"}
+                    ),
+                    @LuaMethodOverload(
+                            argumentTypes = {Integer.class, Integer.class, Integer.class, Integer.class, Double.class, Double.class, Double.class, Double.class},
+                            argumentNames = {"x", "y", "width", "height", "r", "g", "b", "a"}
+                    )
+            },
+            value = "texture.blend"
+    )
+    public FiguraTexture blend(int x, int y, int width, int height, Object r, Double g, Double b, Double a) {
+        checkRegion(x, y, width, height);
+        FiguraVec4 color = parseColor("blend", r, g, b, a);
+        backupImage();
+        markChanged(x, y, width, height);
+
+        double alpha = color.w;
+        for (int i = y; i < y + height; i++) {
+            for (int j = x; j < x + width; j++) {
+                int abgr = texture.getPixelRGBA(j, i);
+                double inv = 1 - alpha;
+
+                texture.setPixelRGBA(j, i, toABGR(
+                        color.x * alpha + (abgr & 0xFF) / 255d * inv,
+                        color.y * alpha + (abgr >> 8 & 0xFF) / 255d * inv,
+                        color.z * alpha + (abgr >> 16 & 0xFF) / 255d * inv,
+                        alpha + (abgr >>> 24) / 255d * inv
+                ));
+            }
+        }
+        return this;
+    }
+
+    //validates a region of the bulk pixel methods, and charges the script for the pixels it touches
+    private void checkRegion(int x, int y, int width, int height) {
+        //compared by subtracting, so huge sizes cannot overflow past the bounds
+        if (x < 0 || y < 0 || width < 0 || height < 0 || x > getWidth() || y > getHeight() || width > getWidth() - x || height > getHeight() - y)
+            throw new LuaError("Region (" + x + ", " + y + ", " + width + ", " + height + ") is outside of the texture bounds");
+        owner.punish(width * height / PIXEL_COST);
+    }
+
+    private static int toABGR(double r, double g, double b, double a) {
+        return channel(a) << 24 | channel(b) << 16 | channel(g) << 8 | channel(r);
+    }
+
+    private static int channel(double value) {
+        return Math.max(0, Math.min(0xFF, (int) (value * 0xFF)));
+    }
+
     @LuaWhitelist
     public Object __index(String arg) {
         return "name".equals(arg) ? name : null;
@@ -60,21 +60,7 @@ public class FiguraTextureSet {
             return null;
 
         return switch (type) {
-            case SKIN, CAPE, ELYTRA -> {
-                ClientPacketListener connection = Minecraft.getInstance().getConnection();
-                if (connection == null)
-                    yield null;
-
-                PlayerInfo info = connection.getPlayerInfo(owner);
-                if (info == null)
-                    yield null;
-
-                yield switch (type) {
-                    case CAPE -> info.getCapeLocation();
-                    case ELYTRA -> info.getElytraLocation() == null ? ElytraLayerAccessor.getWingsLocation() : info.getElytraLocation();
-                    default -> info.getSkinLocation();
-                };
-            }
+            case SKIN, CAPE, ELYTRA -> getPlayerTexture(owner, type);
             case RESOURCE -> {
                 try {
                     yield new ResourceLocation(String.valueOf(pair.getSecond()));
@@ -96,6 +82,22 @@ public class FiguraTextureSet {
         };
     }
 
+    public static ResourceLocation getPlayerTexture(UUID owner, OverrideType type) {
+        ClientPacketListener connection = Minecraft.getInstance().getConnection();
+        if (connection == null)
+            return null;
+
+        PlayerInfo info = connection.getPlayerInfo(owner);
+        if (info == null)
+            return null;
+
+        return switch (type) {
+            case CAPE -> info.getCapeLocation();
+            case ELYTRA -> info.getElytraLocation() == null ? ElytraLayerAccessor.getWingsLocation() : info.getElytraLocation();
+            default -> info.getSkinLocation();
+        };
+    }
+
     public enum OverrideType {
         SKIN,
         CAPE,
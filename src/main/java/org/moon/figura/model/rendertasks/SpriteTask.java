@@ -19,12 +19,12 @@ import org.moon.figura.math.vector.FiguraVec3;
 import org.moon.figura.math.vector.FiguraVec4;
 import org.moon.figura.model.FiguraModelPart;
 import org.moon.figura.model.rendering.Vertex;
+import org.moon.figura.model.rendering.VertexArray;
 import org.moon.figura.model.rendering.texture.FiguraTexture;
 import org.moon.figura.model.rendering.texture.RenderTypes;
 import org.moon.figura.utils.ColorUtils;
 import org.moon.figura.utils.LuaUtils;
 
-import java.util.ArrayList;
 import java.util.List;
 
 @LuaWhitelist
@@ -41,7 +41,7 @@ public class SpriteTask extends RenderTask {
     private float u = 0f, v = 0f;
     private int r = 0xFF, g = 0xFF, b = 0xFF, a = 0xFF;
     private RenderTypes renderType = RenderTypes.TRANSLUCENT;
-    private final List<Vertex> vertices = new ArrayList<>(4);
+    private final VertexArray vertices = new VertexArray(4);
 
     public SpriteTask(String name, Avatar owner, FiguraModelPart parent) {
         super(name, owner, parent);
@@ -62,13 +62,14 @@ public class SpriteTask extends RenderTask {
         VertexConsumer consumer = buffer.getBuffer(renderType.get(texture));
 
         //create vertices
-        for (Vertex v : vertices) {
-            consumer.vertex(pose, v.x, v.y, v.z)
+        float[] data = vertices.getData();
+        for (int i = 0, o = 0; i < vertices.size(); i++, o += VertexArray.STRIDE) {
+            consumer.vertex(pose, data[o + VertexArray.X], data[o + VertexArray.Y], data[o + VertexArray.Z])
                     .color(r, g, b, a)
-                    .uv(v.u, v.v)
+                    .uv(data[o + VertexArray.U], data[o + VertexArray.V])
                     .overlayCoords(newOverlay)
                     .uv2(newLight)
-                    .normal(normal, v.nx, v.ny, v.nz)
+                    .normal(normal, data[o + VertexArray.NX], data[o + VertexArray.NY], data[o + VertexArray.NZ])
                     .endVertex();
         }
     }
@@ -88,10 +89,10 @@ public class SpriteTask extends RenderTask {
         float v2 = v + regionH / (float) textureH;
 
         vertices.clear();
-        vertices.add(new Vertex(0f, height, 0f, u, v2, 0f, 0f, -1f));
-        vertices.add(new Vertex(width, height, 0f, u2, v2, 0f, 0f, -1f));
-        vertices.add(new Vertex(width, 0f, 0f, u2, v, 0f, 0f, -1f));
-        vertices.add(new Vertex(0f, 0f, 0f, u, v, 0f, 0f, -1f));
+        vertices.add(0f, height, 0f, u, v2, 0f, 0f, -1f);
+        vertices.add(width, height, 0f, u2, v2, 0f, 0f, -1f);
+        vertices.add(width, 0f, 0f, u2, v, 0f, 0f, -1f);
+        vertices.add(0f, 0f, 0f, u, v, 0f, 0f, -1f);
     }
 
 
@@ -409,7 +410,7 @@ public class SpriteTask extends RenderTask {
     @LuaWhitelist
     @LuaMethodDoc("sprite_task.get_vertices")
     public List<Vertex> getVertices() {
-        return vertices;
+        return vertices.getVertices();
     }
 
     @Override
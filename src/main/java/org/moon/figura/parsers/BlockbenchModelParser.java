@@ -79,6 +79,20 @@ public class BlockbenchModelParser {
         return new ModelData(textures, animationList, nbt);
     }
 
+    public int getTextureOffset() {
+        return textureOffset;
+    }
+
+    public int getAnimationOffset() {
+        return animationOffset;
+    }
+
+    //used when reusing an already parsed model, so the next models get the right ids
+    public void setOffsets(int textureOffset, int animationOffset) {
+        this.textureOffset = textureOffset;
+        this.animationOffset = animationOffset;
+    }
+
     public static void parseParent(String name, CompoundTag nbt) {
         ParentType parentType = ParentType.get(name);
         if (parentType != ParentType.None)
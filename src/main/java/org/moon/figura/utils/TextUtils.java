@@ -9,11 +9,14 @@ import net.minecraft.util.FormattedCharSequence;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 public class TextUtils {
 
@@ -23,6 +26,24 @@ public class TextUtils {
 
     public static boolean allowScriptEvents;
 
+    //compiled patterns of replaceInText, the pattern itself and its split pattern
+    private static final int MAX_PATTERNS = 256;
+    private static final Map<String, Pattern[]> PATTERNS = new ConcurrentHashMap<>();
+
+    private static Pattern[] getPatterns(String regex) {
+        Pattern[] patterns = PATTERNS.get(regex);
+        if (patterns != null)
+            return patterns;
+
+        //most regexes are constants, but player names are also used, so do not let them pile up forever
+        if (PATTERNS.size() >= MAX_PATTERNS)
+            PATTERNS.clear();
+
+        patterns = new Pattern[]{Pattern.compile(regex), Pattern.compile("((?<=" + regex + ")|(?=" + regex + "))")};
+        PATTERNS.put(regex, patterns);
+        return patterns;
+    }
+
     public static List<Component> splitText(FormattedText text, String regex) {
         //list to return
         ArrayList<Component> textList = new ArrayList<>();
@@ -107,18 +128,22 @@ public class TextUtils {
         Component replace = replacement instanceof Component c ? c : Component.literal(replacement.toString());
         MutableComponent ret = Component.empty();
 
+        Pattern[] patterns = getPatterns(regex);
+        Pattern pattern = patterns[0];
+        Pattern splitPattern = patterns[1];
+
         int[] ints = {beginIndex, times};
         text.visit((style, string) -> {
-            //test predicate
-            if (!predicate.test(string, style)) {
+            //test predicate, and skip splitting when there is nothing to replace
+            if (!predicate.test(string, style) || !pattern.matcher(string).find()) {
                 ret.append(Component.literal(string).withStyle(style));
                 return Optional.empty();
             }
 
             //split
-            String[] split = string.split("((?<=" + regex + ")|(?=" + regex + "))");
+            String[] split = splitPattern.split(string);
             for (String s : split) {
-                if (!s.matches(regex)) {
+                if (!pattern.matcher(s).matches()) {
                     ret.append(Component.literal(s).withStyle(style));
                     continue;
                 }
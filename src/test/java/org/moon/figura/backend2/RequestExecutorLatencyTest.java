@@ -0,0 +1,135 @@
+package org.moon.figura.backend2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.moon.figura.backend2.RequestExecutor.Lane;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the executor against a local stand-in for the backend, where avatar downloads are slow
+ */
+class RequestExecutorLatencyTest {
+
+    private static final int AVATAR_DELAY = 200; //ms
+
+    private HttpServer server;
+    private HttpClient client;
+    private final AtomicInteger served = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/avatar", exchange -> {
+            sleep(AVATAR_DELAY);
+            respond(exchange, "avatar");
+        });
+        server.createContext("/user", exchange -> respond(exchange, "{}"));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void respond(HttpExchange exchange, String text) throws IOException {
+        byte[] bytes = text.getBytes();
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+        served.incrementAndGet();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private void queue(RequestExecutor executor, Lane lane, String path, Runnable done) {
+        HttpRequest request = HttpRequest.newBuilder(uri(path)).build();
+        executor.execute(lane, () -> executor.runLimited(request.uri(), () -> {
+            try {
+                client.send(request, HttpResponse.BodyHandlers.ofString());
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            done.run();
+        }));
+    }
+
+    @Test
+    void slowDownloadsRunInParallel() throws InterruptedException {
+        RequestExecutor executor = new RequestExecutor("test", 4, 4);
+        CountDownLatch done = new CountDownLatch(8);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 8; i++)
+            queue(executor, Lane.AVATAR, "/avatar", done::countDown);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        //one after the other would take 8 delays, four at once about 2
+        assertTrue(elapsed < AVATAR_DELAY * 5, "took " + elapsed + "ms");
+        assertEquals(8, served.get());
+    }
+
+    @Test
+    void userRequestsSkipQueuedDownloads() throws InterruptedException {
+        //every request goes to the same host, which only allows two at once
+        RequestExecutor executor = new RequestExecutor("test", 4, 2);
+        CountDownLatch avatars = new CountDownLatch(8);
+        CountDownLatch user = new CountDownLatch(1);
+        AtomicLong userDone = new AtomicLong();
+        AtomicLong avatarsDone = new AtomicLong();
+
+        for (int i = 0; i < 8; i++) {
+            queue(executor, Lane.AVATAR, "/avatar", () -> {
+                avatarsDone.set(System.nanoTime());
+                avatars.countDown();
+            });
+        }
+        sleep(AVATAR_DELAY / 4);
+
+        long start = System.nanoTime();
+        queue(executor, Lane.USER, "/user", () -> {
+            userDone.set(System.nanoTime());
+            user.countDown();
+        });
+
+        assertTrue(user.await(10, TimeUnit.SECONDS));
+        assertTrue(avatars.await(10, TimeUnit.SECONDS));
+
+        //the user request waits for one slot of the host at most, not for the whole avatar queue
+        long userLatency = TimeUnit.NANOSECONDS.toMillis(userDone.get() - start);
+        assertTrue(userLatency < AVATAR_DELAY * 2, "user request took " + userLatency + "ms");
+        assertTrue(userDone.get() < avatarsDone.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
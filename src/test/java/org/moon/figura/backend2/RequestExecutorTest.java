@@ -0,0 +1,118 @@
+package org.moon.figura.backend2;
+
+import org.junit.jupiter.api.Test;
+import org.moon.figura.backend2.RequestExecutor.Lane;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestExecutorTest {
+
+    private static final URI HOST_A = URI.create("https://a.test/request");
+    private static final URI HOST_B = URI.create("https://b.test/request");
+
+    @Test
+    void lanesRunByPriorityThenInOrder() throws InterruptedException {
+        RequestExecutor executor = new RequestExecutor("test", 1, 1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+
+        //hold the only worker, so everything below is queued before anything runs
+        executor.execute(Lane.USER, () -> await(blocker));
+        executor.execute(Lane.AVATAR, () -> { order.add("avatar"); done.countDown(); });
+        executor.execute(Lane.USER, () -> { order.add("user 1"); done.countDown(); });
+        executor.execute(Lane.AVATAR_VISIBLE, () -> { order.add("visible"); done.countDown(); });
+        executor.execute(Lane.USER, () -> { order.add("user 2"); done.countDown(); });
+        blocker.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("user 1", "user 2", "visible", "avatar"), order);
+    }
+
+    @Test
+    void hostLimitIsNeverExceeded() throws InterruptedException {
+        RequestExecutor executor = new RequestExecutor("test", 4, 1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger max = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(8);
+
+        for (int i = 0; i < 8; i++) {
+            executor.execute(Lane.USER, () -> executor.runLimited(HOST_A, () -> {
+                max.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(10);
+                running.decrementAndGet();
+                done.countDown();
+            }));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, max.get());
+    }
+
+    @Test
+    void busyHostDoesNotHoldWorkers() throws InterruptedException {
+        RequestExecutor executor = new RequestExecutor("test", 1, 1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch otherHost = new CountDownLatch(1);
+        CountDownLatch sameHost = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        //a request to A holds the only slot of that host, on another thread
+        Thread holder = new Thread(() -> executor.runLimited(HOST_A, () -> {
+            started.countDown();
+            await(blocker);
+        }));
+        holder.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        //the second request to A waits without the worker, so B still gets through
+        executor.execute(Lane.USER, () -> executor.runLimited(HOST_A, sameHost::countDown));
+        executor.execute(Lane.USER, () -> executor.runLimited(HOST_B, otherHost::countDown));
+
+        assertTrue(otherHost.await(5, TimeUnit.SECONDS));
+        assertEquals(1, sameHost.getCount());
+
+        blocker.countDown();
+        assertTrue(sameHost.await(5, TimeUnit.SECONDS));
+        holder.join();
+    }
+
+    @Test
+    void raisingTheHostLimitStartsWaitingRequests() throws InterruptedException {
+        RequestExecutor executor = new RequestExecutor("test", 2, 1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch waiting = new CountDownLatch(1);
+
+        executor.execute(Lane.USER, () -> executor.runLimited(HOST_A, () -> await(blocker)));
+        executor.execute(Lane.USER, () -> executor.runLimited(HOST_A, waiting::countDown));
+        assertFalse(waiting.await(100, TimeUnit.MILLISECONDS));
+
+        executor.setLimits(2, 2);
+        assertTrue(waiting.await(5, TimeUnit.SECONDS));
+        blocker.countDown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
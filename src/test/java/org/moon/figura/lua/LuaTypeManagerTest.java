@@ -0,0 +1,72 @@
+package org.moon.figura.lua;
+
+import org.junit.jupiter.api.Test;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LuaTypeManagerTest {
+
+    @LuaWhitelist
+    public static class Target {
+        public static String join(String... parts) {
+            return String.join(",", parts);
+        }
+
+        public static Double sum(Double... values) {
+            double sum = 0;
+            for (Double value : values)
+                sum += value;
+            return sum;
+        }
+
+        public static String count(Object... values) {
+            return values.getClass().getSimpleName() + " " + values.length;
+        }
+
+        public static String withDefaults(int i, double d, boolean b, String s) {
+            return i + " " + d + " " + b + " " + s;
+        }
+    }
+
+    private static VarArgFunction wrapper(String name) {
+        for (Method method : Target.class.getMethods())
+            if (method.getName().equals(name))
+                return new LuaTypeManager().getWrapper(method);
+        throw new IllegalArgumentException(name);
+    }
+
+    private static Varargs call(String name, LuaValue... args) {
+        return wrapper(name).invoke(LuaValue.varargsOf(args));
+    }
+
+    @Test
+    void varargsTakeTheRemainingArguments() {
+        assertEquals("a,b,c", call("join", LuaValue.valueOf("a"), LuaValue.valueOf("b"), LuaValue.valueOf("c")).tojstring(1));
+        assertEquals(6.5, call("sum", LuaValue.valueOf(1), LuaValue.valueOf(2.5), LuaValue.valueOf(3)).todouble(1));
+    }
+
+    @Test
+    void varargsTakeATable() {
+        LuaTable table = new LuaTable();
+        table.set(1, LuaValue.valueOf("x"));
+        table.set(2, LuaValue.valueOf("y"));
+        assertEquals("x,y", call("join", table).tojstring(1));
+    }
+
+    @Test
+    void varargArraysKeepTheirType() {
+        assertEquals("Object[] 2", call("count", LuaValue.valueOf(1), LuaValue.valueOf("a")).tojstring(1));
+    }
+
+    @Test
+    void missingArgumentsGetDefaults() {
+        assertEquals("0 0.0 false null", call("withDefaults").tojstring(1));
+        assertEquals("3 1.5 true s", call("withDefaults", LuaValue.valueOf(3), LuaValue.valueOf(1.5), LuaValue.TRUE, LuaValue.valueOf("s")).tojstring(1));
+    }
+}
@@ -0,0 +1,75 @@
+package org.moon.figura.lua;
+
+import net.minecraft.nbt.*;
+import org.junit.jupiter.api.Test;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NbtToLuaTest {
+
+    private static CompoundTag sample(int health) {
+        CompoundTag tag = new CompoundTag();
+        tag.putInt("Health", health);
+        tag.putString("Name", "test");
+        tag.putDouble("Speed", 0.5);
+
+        ListTag list = new ListTag();
+        list.add(StringTag.valueOf("a"));
+        list.add(StringTag.valueOf("b"));
+        tag.put("Tags", list);
+
+        CompoundTag inner = new CompoundTag();
+        inner.putByte("Count", (byte) 3);
+        tag.put("Item", inner);
+        return tag;
+    }
+
+    @Test
+    void convertsEveryKindOfTag() {
+        LuaTable table = NbtToLua.convert(sample(20)).checktable();
+        assertEquals(20, table.get("Health").toint());
+        assertEquals("test", table.get("Name").tojstring());
+        assertEquals(0.5, table.get("Speed").todouble());
+        assertEquals("b", table.get("Tags").get(2).tojstring());
+        assertEquals(3, table.get("Item").get("Count").toint());
+        assertNull(NbtToLua.convert(null));
+    }
+
+    @Test
+    void readOnlyConversionsAreShared() {
+        LuaTable first = NbtToLua.convertReadOnly(sample(20));
+        LuaTable second = NbtToLua.convertReadOnly(sample(20));
+        assertSame(first, second);
+        assertThrows(LuaError.class, () -> first.rawset(LuaValue.valueOf("Health"), LuaValue.valueOf(1)));
+    }
+
+    @Test
+    void cachedTagsAreFetchedOncePerTick() {
+        NbtToLua.Cached cached = new NbtToLua.Cached();
+        AtomicInteger fetches = new AtomicInteger();
+
+        LuaTable first = cached.convert(1, () -> { fetches.incrementAndGet(); return sample(20); });
+        LuaTable again = cached.convert(1, () -> { fetches.incrementAndGet(); return sample(20); });
+        assertSame(first, again);
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void cachedTablesOnlyChangeWithTheTag() {
+        NbtToLua.Cached cached = new NbtToLua.Cached();
+
+        LuaTable first = cached.convert(1, () -> sample(20));
+        LuaTable same = cached.convert(2, () -> sample(20));
+        assertSame(first, same);
+
+        LuaTable changed = cached.convert(3, () -> sample(19));
+        assertNotSame(first, changed);
+        assertEquals(19, changed.get("Health").toint());
+        assertThrows(LuaError.class, () -> changed.rawset(LuaValue.valueOf("Health"), LuaValue.valueOf(1)));
+    }
+}
@@ -0,0 +1,64 @@
+package org.moon.figura.lua.api.ping;
+
+import org.junit.jupiter.api.Test;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PingArgTest {
+
+    //vectors and matrices need a runtime to be read back, everything else round trips without an avatar
+    private static LuaValue[] roundTrip(LuaValue... values) {
+        byte[] bytes = new PingArg(LuaValue.varargsOf(values)).toByteArray();
+        return PingArg.fromByteArray(bytes, null);
+    }
+
+    @Test
+    void primitivesRoundTrip() {
+        LuaValue[] values = {
+                LuaValue.NIL, LuaValue.TRUE, LuaValue.FALSE,
+                LuaValue.valueOf(1.5), LuaValue.valueOf("hello"), LuaValue.valueOf("")
+        };
+        assertArrayEquals(values, roundTrip(values));
+    }
+
+    @Test
+    void integersKeepTheirValueAtEverySize() {
+        int[] ints = {0, 127, -128, 128, -129, 32767, -32768, 32768, 0x7FFFFF, -0x800000, 0x800000, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        LuaValue[] values = new LuaValue[ints.length];
+        for (int i = 0; i < ints.length; i++)
+            values[i] = LuaValue.valueOf(ints[i]);
+
+        assertArrayEquals(values, roundTrip(values));
+    }
+
+    @Test
+    void tablesRoundTrip() {
+        LuaTable inner = new LuaTable();
+        inner.set(1, LuaValue.valueOf("a"));
+        inner.set(2, LuaValue.valueOf(300));
+
+        LuaTable table = new LuaTable();
+        table.set("inner", inner);
+        table.set("flag", LuaValue.TRUE);
+        table.set(10, LuaValue.valueOf(0.25));
+
+        LuaValue[] result = roundTrip(table);
+        assertEquals(1, result.length);
+
+        LuaTable read = result[0].checktable();
+        assertEquals(LuaValue.TRUE, read.get("flag"));
+        assertEquals(LuaValue.valueOf(0.25), read.get(10));
+        assertEquals(LuaValue.valueOf("a"), read.get("inner").get(1));
+        assertEquals(LuaValue.valueOf(300), read.get("inner").get(2));
+    }
+
+    @Test
+    void bigPingsGrowTheBuffer() {
+        String big = "x".repeat(10000);
+        LuaValue[] result = roundTrip(LuaValue.valueOf(big), LuaValue.valueOf(1));
+        assertEquals(big, result[0].tojstring());
+        assertEquals(1, result[1].toint());
+    }
+}
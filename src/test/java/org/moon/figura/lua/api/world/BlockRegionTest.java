@@ -0,0 +1,60 @@
+package org.moon.figura.lua.api.world;
+
+import org.junit.jupiter.api.Test;
+import org.luaj.vm2.LuaError;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockRegionTest {
+
+    private static final int WORLD = 30000000;
+
+    @Test
+    void axisIsOrderedAndFloored() {
+        assertArrayEquals(new int[]{-2, 4}, WorldAPI.getRegionAxis(1.5, -1.5, -WORLD, WORLD - 1));
+        assertArrayEquals(new int[]{5, 1}, WorldAPI.getRegionAxis(5.9, 5.1, -WORLD, WORLD - 1));
+    }
+
+    @Test
+    void axisIsCutDownToTheBounds() {
+        assertArrayEquals(new int[]{-64, 11}, WorldAPI.getRegionAxis(-80, -54, -64, 319));
+        assertArrayEquals(new int[]{300, 20}, WorldAPI.getRegionAxis(300, 340, -64, 319));
+    }
+
+    @Test
+    void hugeRegionsAreRejected() {
+        assertThrows(LuaError.class, () -> WorldAPI.getRegionAxis(-1e10, 1, -WORLD, WORLD - 1));
+        assertThrows(LuaError.class, () -> WorldAPI.getRegionAxis(0, 64, -WORLD, WORLD - 1));
+        assertThrows(LuaError.class, () -> WorldAPI.getRegionAxis(Double.NEGATIVE_INFINITY, 0, -WORLD, WORLD - 1));
+        assertArrayEquals(new int[]{0, 64}, WorldAPI.getRegionAxis(0, 63, -WORLD, WORLD - 1));
+    }
+
+    @Test
+    void regionsOutsideTheWorldAreRejected() {
+        assertThrows(LuaError.class, () -> WorldAPI.getRegionAxis(400, 410, -64, 319));
+        assertThrows(LuaError.class, () -> WorldAPI.getRegionAxis(1e10, 1e10 + 1, -WORLD, WORLD - 1));
+        assertThrows(LuaError.class, () -> WorldAPI.getRegionAxis(Double.NaN, 0, -WORLD, WORLD - 1));
+    }
+
+    @Test
+    void indicesCoverTheRegionOnceInOrder() {
+        int sizeX = 3, sizeY = 4, sizeZ = 5;
+        Set<Integer> seen = new HashSet<>();
+        int expected = 1;
+
+        //x first, then z, then y
+        for (int y = 0; y < sizeY; y++) {
+            for (int z = 0; z < sizeZ; z++) {
+                for (int x = 0; x < sizeX; x++) {
+                    int index = WorldAPI.getRegionIndex(x, y, z, sizeX, sizeZ);
+                    assertEquals(expected++, index);
+                    assertTrue(seen.add(index));
+                }
+            }
+        }
+        assertEquals(sizeX * sizeY * sizeZ, seen.size());
+    }
+}
@@ -0,0 +1,113 @@
+package org.moon.figura.model;
+
+import org.junit.jupiter.api.Test;
+import org.moon.figura.model.rendering.VertexArray;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmoothNormalsTest {
+
+    private static final float DELTA = 1e-6f;
+
+    //one vertex per position, with the given normal
+    private static VertexArray vertices(float[]... posAndNormal) {
+        VertexArray array = new VertexArray();
+        for (float[] v : posAndNormal)
+            array.add(v[0], v[1], v[2], 0f, 0f, v[3], v[4], v[5]);
+        return array;
+    }
+
+    private static void smoothfy(float epsilon, VertexArray... arrays) {
+        Map<Integer, VertexArray> map = new HashMap<>();
+        for (int i = 0; i < arrays.length; i++)
+            map.put(i, arrays[i]);
+        FiguraModelPartReader.smoothfy(map, epsilon);
+    }
+
+    private static void assertNormal(VertexArray array, int index, float x, float y, float z) {
+        float[] data = array.getData();
+        int o = index * VertexArray.STRIDE;
+        assertEquals(x, data[o + VertexArray.NX], DELTA);
+        assertEquals(y, data[o + VertexArray.NY], DELTA);
+        assertEquals(z, data[o + VertexArray.NZ], DELTA);
+    }
+
+    @Test
+    void samePositionAveragesNormals() {
+        VertexArray a = vertices(new float[]{1f, 2f, 3f, 1f, 0f, 0f});
+        VertexArray b = vertices(new float[]{1f, 2f, 3f, 0f, 1f, 0f});
+        smoothfy(FiguraModelPartReader.WELD_EPSILON, a, b);
+
+        float half = (float) Math.sqrt(0.5);
+        assertNormal(a, 0, half, half, 0f);
+        assertNormal(b, 0, half, half, 0f);
+    }
+
+    @Test
+    void nearPositionsWeldAcrossCells() {
+        //0.0999 and 0.1001 sit in different cells of 0.1, but are way within the epsilon
+        VertexArray array = vertices(
+                new float[]{0.0999f, 0f, 0f, 1f, 0f, 0f},
+                new float[]{0.1001f, 0f, 0f, 0f, 0f, 1f}
+        );
+        smoothfy(0.1f, array);
+
+        float half = (float) Math.sqrt(0.5);
+        assertNormal(array, 0, half, 0f, half);
+        assertNormal(array, 1, half, 0f, half);
+    }
+
+    @Test
+    void farPositionsStaySeparate() {
+        VertexArray array = vertices(
+                new float[]{0f, 0f, 0f, 1f, 0f, 0f},
+                new float[]{0.5f, 0f, 0f, 0f, 1f, 0f}
+        );
+        smoothfy(0.1f, array);
+
+        assertNormal(array, 0, 1f, 0f, 0f);
+        assertNormal(array, 1, 0f, 1f, 0f);
+    }
+
+    @Test
+    void largeCoordinatesStaySeparate() {
+        //scaled by the default epsilon, these are way past what fits in an int
+        VertexArray array = vertices(
+                new float[]{30000f, 0f, 0f, 1f, 0f, 0f},
+                new float[]{30001f, 0f, 0f, 0f, 1f, 0f},
+                new float[]{-30000f, 0f, 0f, 0f, 0f, 1f}
+        );
+        smoothfy(FiguraModelPartReader.WELD_EPSILON, array);
+
+        assertNormal(array, 0, 1f, 0f, 0f);
+        assertNormal(array, 1, 0f, 1f, 0f);
+        assertNormal(array, 2, 0f, 0f, 1f);
+    }
+
+    @Test
+    void epsilonDecidesWhatWelds() {
+        float[] first = {0f, 0f, 0f, 1f, 0f, 0f};
+        float[] second = {0.01f, 0f, 0f, 0f, 1f, 0f};
+
+        VertexArray strict = vertices(first, second);
+        smoothfy(FiguraModelPartReader.WELD_EPSILON, strict);
+        assertNormal(strict, 0, 1f, 0f, 0f);
+        assertNormal(strict, 1, 0f, 1f, 0f);
+
+        VertexArray loose = vertices(first, second);
+        smoothfy(0.05f, loose);
+        float half = (float) Math.sqrt(0.5);
+        assertNormal(loose, 0, half, half, 0f);
+        assertNormal(loose, 1, half, half, 0f);
+    }
+
+    @Test
+    void nonPositiveEpsilonIsRejected() {
+        VertexArray array = vertices(new float[]{0f, 0f, 0f, 1f, 0f, 0f});
+        assertThrows(IllegalArgumentException.class, () -> smoothfy(0f, array));
+        assertThrows(IllegalArgumentException.class, () -> smoothfy(Float.NaN, array));
+    }
+}